@@ -0,0 +1,72 @@
+package mastercardsend.api.p2p.build;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step writing a gzip variant next to each text asset, e.g. css/bootstrap.min.css.gz, run by Maven on
+ * target/classes/static after the resources are copied. The variants are served by
+ * {@code mastercardsend.api.p2p.controller.StaticAssetsConfig} to clients accepting gzip, so assets are compressed
+ * once at build time rather than on every response. Variants that would not be smaller than the asset are not written.
+ * Maven runs this file with the java source launcher, so it is never compiled into the application.
+ */
+public final class AssetCompressor {
+    private static final List<String> EXTENSIONS = List.of(".css", ".js", ".html", ".svg", ".json", ".txt");
+
+    private AssetCompressor() {
+    }
+
+    /**
+     * @param args Directories of the assets
+     * @throws IOException if an asset can not be read or its variant written
+     */
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            Path directory = Paths.get(arg);
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            List<Path> assets;
+            try (Stream<Path> files = Files.walk(directory)) {
+                assets = files.filter(Files::isRegularFile).filter(AssetCompressor::isText).collect(Collectors.toList());
+            }
+            for (Path asset : assets) {
+                compress(asset);
+            }
+        }
+    }
+
+    private static boolean isText(Path file) {
+        String name = file.getFileName().toString();
+        return EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+
+    /**
+     * Write the gzip variant of an asset, only kept if smaller than the asset.
+     */
+    private static void compress(Path asset) throws IOException {
+        Path variant = asset.resolveSibling(asset.getFileName() + ".gz");
+        if (Files.exists(variant) && Files.getLastModifiedTime(variant).compareTo(Files.getLastModifiedTime(asset)) >= 0) {
+            return; // unchanged since the last build
+        }
+        byte[] content = Files.readAllBytes(asset);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(variant)) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        if (Files.size(variant) >= content.length) {
+            Files.delete(variant);
+        }
+    }
+}
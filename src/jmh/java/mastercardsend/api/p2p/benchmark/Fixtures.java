@@ -0,0 +1,56 @@
+package mastercardsend.api.p2p.benchmark;
+
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Payment transfers shared by the benchmarks, read from the test resources.
+ */
+final class Fixtures {
+    static final String PAYMENT_TRANSFER_JSON_FILE = "src/test/resources/MastercardSendPaymentTransfer";
+    static final String PAYMENT_TRANSFER_JSON_FILE_FOR_FORM = "src/test/resources/MastercardSendPaymentTransferForm";
+
+    private Fixtures() {
+    }
+
+    static byte[] read(String filePath) throws IOException {
+        return Files.readAllBytes(Paths.get(filePath));
+    }
+
+    /**
+     * @return A transfer as submitted by the form, with its account URIs not yet built
+     */
+    static MastercardSendPaymentTransfer formTransfer() {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+        paymentTransfer.setPartnerId("ptnr_benchmark");
+        paymentTransfer.setAmount(Amount.valueOf("44"));
+        paymentTransfer.setCurrency("USD");
+        paymentTransfer.setFundingSource("Debit");
+        paymentTransfer.setSenderFirstName("Jane");
+        paymentTransfer.setSenderLastName("Smith");
+        paymentTransfer.setSenderAddressLine1("1 Main St");
+        paymentTransfer.setSenderCity("OFallon");
+        paymentTransfer.setSenderPostalCode("63368");
+        paymentTransfer.setSenderCountrySubdivision("MO");
+        paymentTransfer.setSenderCountry("USA");
+        paymentTransfer.setSenderUriIdentifier("5509670000000187");
+        paymentTransfer.setSenderUriExpMonth("08");
+        paymentTransfer.setSenderUriExpYear("2099");
+        paymentTransfer.setSenderUriCvc("123");
+        paymentTransfer.setRecipientFirstName("John");
+        paymentTransfer.setRecipientLastName("Smith");
+        paymentTransfer.setRecipientAddressLine1("2 Main St");
+        paymentTransfer.setRecipientCity("OFallon");
+        paymentTransfer.setRecipientPostalCode("63368");
+        paymentTransfer.setRecipientUriScheme("PAN");
+        paymentTransfer.setRecipientUriIdentifier("5509670000000187");
+        paymentTransfer.setRecipientUriExpYear("2099");
+        paymentTransfer.setRecipientUriExpMonth("08");
+        paymentTransfer.setRecipientUriCvc("123");
+        return paymentTransfer;
+    }
+}
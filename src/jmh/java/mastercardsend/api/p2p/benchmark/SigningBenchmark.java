@@ -0,0 +1,80 @@
+package mastercardsend.api.p2p.benchmark;
+
+import mastercardsend.api.p2p.transport.OAuthSigner;
+import mastercardsend.api.p2p.transport.SigningKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing cost per request: a signature engine looked up and initialized on every request, as before,
+ * against the pooled engines of SigningKey, and the whole OAuth header. Run with -t to see contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SigningBenchmark {
+    private PrivateKey privateKey;
+    private SigningKey signingKey;
+    private OAuthSigner signer;
+    private URI uri;
+    private byte[] baseString;
+    private byte[] body;
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        privateKey = generator.generateKeyPair().getPrivate();
+        signingKey = SigningKey.of(privateKey);
+        signer = new OAuthSigner("consumer-key", signingKey);
+        uri = URI.create("https://sandbox.api.mastercard.com/send/v1/partners/ptnr_1/transfers/payment");
+        body = Fixtures.read(Fixtures.PAYMENT_TRANSFER_JSON_FILE);
+        baseString = ("POST&" + uri + "&oauth_body_hash%3D...").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Provider lookup, engine allocation and key initialization on every request.
+     */
+    @Benchmark
+    public byte[] signPerCallEngine() throws GeneralSecurityException {
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update(baseString);
+        return signature.sign();
+    }
+
+    @Benchmark
+    public byte[] signCachedEngine() throws GeneralSecurityException {
+        return signingKey.sign(baseString);
+    }
+
+    /**
+     * Body hash, base string, signature and header formatting.
+     */
+    @Benchmark
+    public String authorizationHeader() throws GeneralSecurityException {
+        return signer.authorizationHeader("POST", uri, body);
+    }
+}
@@ -0,0 +1,37 @@
+package mastercardsend.api.p2p.benchmark;
+
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+import mastercardsend.api.p2p.service.SendApiClient;
+
+/**
+ * Answers every call immediately with a fixed eligible account and a created transfer,
+ * so that benchmarks only measure the application code around the SDK.
+ */
+public class StubSendApiClient implements SendApiClient {
+
+    @Override
+    public AccountInfo readAccountInfo(RequestMap map) {
+        RequestMap response = new RequestMap();
+        response.set("account_info.receiving_eligibility.eligible", true);
+        return new AccountInfo(response);
+    }
+
+    @Override
+    public PaymentTransfer createPaymentTransfer(RequestMap map) {
+        RequestMap response = new RequestMap();
+        response.set("payment_transfer.id", "trn_benchmark");
+        response.set("payment_transfer.transfer_reference", map.get("payment_transfer.transfer_reference"));
+        response.set("payment_transfer.status", "APPROVED");
+        return new PaymentTransfer(response);
+    }
+
+    @Override
+    public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) {
+        RequestMap response = new RequestMap();
+        response.set("payment_transfer.id", transferId);
+        response.set("payment_transfer.status", "APPROVED");
+        return new PaymentTransfer(response);
+    }
+}
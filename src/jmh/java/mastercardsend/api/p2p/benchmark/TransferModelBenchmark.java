@@ -0,0 +1,70 @@
+package mastercardsend.api.p2p.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request model work done on every transfer: account URI building, form value formatting
+ * and JSON deserialization with the snake case naming strategy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferModelBenchmark {
+    private MastercardSendPaymentTransfer formTransfer;
+    private ObjectReader reader;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        formTransfer = Fixtures.formTransfer();
+        reader = new ObjectMapper().readerFor(MastercardSendPaymentTransfer.class);
+        json = Fixtures.read(Fixtures.PAYMENT_TRANSFER_JSON_FILE);
+    }
+
+    @Benchmark
+    public String senderAccountUri() {
+        formTransfer.setSenderAccountUri();
+        return formTransfer.getSenderAccountUri();
+    }
+
+    /**
+     * Includes the URI scheme formatting of the recipient.
+     */
+    @Benchmark
+    public String recipientAccountUri() {
+        formTransfer.setRecipientAccountUri();
+        return formTransfer.getRecipientAccountUri();
+    }
+
+    /**
+     * The funding source is formatted when set.
+     */
+    @Benchmark
+    public String fundingSource() {
+        formTransfer.setFundingSource("Deposit Account");
+        return formTransfer.getFundingSource();
+    }
+
+    @Benchmark
+    public MastercardSendPaymentTransfer deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
@@ -0,0 +1,92 @@
+package mastercardsend.api.p2p.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mastercardsend.api.p2p.controller.PaymentTransferController;
+import mastercardsend.api.p2p.journal.TransferJournal;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.Diagnostics;
+import mastercardsend.api.p2p.service.MastercardService;
+import mastercardsend.api.p2p.service.TransferMetrics;
+import mastercardsend.api.p2p.service.TransferOutcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * The transfer hot path against a stubbed SDK: the request built by MastercardService.create,
+ * and the whole /createPaymentTransfer controller path including JSON binding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferPathBenchmark {
+    /** Eligibility cache size, 0 measures an eligibility call on every transfer. **/
+    @Param({"0", "10000"})
+    public int eligibilityCacheSize;
+
+    /** Logged diagnostics, other levels log every call: -p diagnosticsLevel=FULL. **/
+    @Param({"OFF"})
+    public Diagnostics.Level diagnosticsLevel;
+
+    private MastercardService service;
+    private MockMvc mvc;
+    private MastercardSendPaymentTransfer paymentTransfer;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("eligibility.cache.maximum-size", Integer.toString(eligibilityCacheSize));
+        service = new MastercardService(new StubSendApiClient(), new Diagnostics(diagnosticsLevel), TransferJournal.NONE,
+                new TransferMetrics(new SimpleMeterRegistry()), env);
+
+        PaymentTransferController controller = new PaymentTransferController();
+        ReflectionTestUtils.setField(controller, "service", service);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        paymentTransfer = Fixtures.formTransfer();
+        paymentTransfer.setSenderAccountUri();
+        paymentTransfer.setRecipientAccountUri();
+        json = Fixtures.read(Fixtures.PAYMENT_TRANSFER_JSON_FILE);
+    }
+
+    /**
+     * RequestMap construction and the call through the stubbed client.
+     */
+    @Benchmark
+    public TransferOutcome create() {
+        return service.create(paymentTransfer);
+    }
+
+    @Benchmark
+    public MvcResult createPaymentTransfer() throws Exception {
+        MvcResult started = mvc.perform(post("/createPaymentTransfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andReturn();
+        return mvc.perform(asyncDispatch(started)).andReturn();
+    }
+}
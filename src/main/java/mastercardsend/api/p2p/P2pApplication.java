@@ -1,12 +1,26 @@
 package mastercardsend.api.p2p;
 
+import mastercardsend.api.p2p.job.DisbursementJob;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class P2pApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(P2pApplication.class, args);
+        SpringApplication application = new SpringApplication(P2pApplication.class);
+        if (DisbursementJob.isRequested(args)) {
+            // the job runs once without the web server, and the exit status tells whether it completed
+            application.setWebApplicationType(WebApplicationType.NONE);
+            int exitCode;
+            try {
+                exitCode = SpringApplication.exit(application.run(args));
+            } catch (RuntimeException e) {
+                exitCode = 1;
+            }
+            System.exit(exitCode);
+        }
+        application.run(args);
     }
 }
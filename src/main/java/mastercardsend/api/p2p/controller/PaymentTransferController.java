@@ -1,114 +1,222 @@
 package mastercardsend.api.p2p.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mastercard.api.p2p.PaymentTransfer;
 import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.AdmissionRejectedException;
+import mastercardsend.api.p2p.service.AdmissionScheduler;
+import mastercardsend.api.p2p.service.BulkTransferService;
+import mastercardsend.api.p2p.service.EligibilityCache;
 import mastercardsend.api.p2p.service.MastercardService;
+import mastercardsend.api.p2p.service.PartnerRegistry;
+import mastercardsend.api.p2p.service.RateLimitExceededException;
+import mastercardsend.api.p2p.service.SendApiException;
+import mastercardsend.api.p2p.service.TransferExecutor;
+import mastercardsend.api.p2p.service.UnknownTenantException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @Controller
 public class PaymentTransferController {
+    // Newline delimited JSON, one result per line
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @Autowired
     private MastercardService service;
 
-    // Partner ID obtained and injected from application.properties
-    @Value("${partnerId}")
-    private String partnerId;
+    @Autowired
+    private BulkTransferService bulkService;
+
+    @Autowired
+    private TransferExecutor transferExecutor;
+
+    // Admits the transfers in the api lane, behind those of the form
+    @Autowired
+    private AdmissionScheduler admission;
+
+    // Partners selected per request with the X-Partner-Tenant header
+    @Autowired
+    private PartnerRegistry partners;
 
     /**
-     * Index page displays a form to transfer payments.
-     * Visit localhost:8080 to view.
-     * @param model Spring model for adding attributes
-     * @return index page
+     * Transfer payments directly. Used for testing.
+     * The servlet thread makes the first attempt if the api lane admits the transfer at once, and is released
+     * if the transfer waits for admission or is retried.
+     * @param tenant Tenant the transfer is made for, the default tenant if absent
+     * @param paymentTransferRequest PaymentTransfer model containing the transfer details
+     * @return 200 status code if the transfer was successful, 400 status code if unsuccessful or the tenant is unknown,
+     * 429 status code with Retry-After if the partner has used up its budget of API calls,
+     * 503 status code with Retry-After if the api lane shed the transfer
      */
-    @GetMapping("/")
-    public String index(Model model) {
-        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
-
-        paymentTransfer.setSenderFirstName("Jane");
-        paymentTransfer.setSenderLastName("Smith");
-        paymentTransfer.setSenderAddressLine1("1 Main St");
-        paymentTransfer.setSenderCity("OFallon");
-        paymentTransfer.setSenderPostalCode("63368");
-        paymentTransfer.setSenderCountrySubdivision("MO");
-        paymentTransfer.setSenderCountry("USA");
-        paymentTransfer.setSenderUriIdentifier("5509670000000187");
-        paymentTransfer.setSenderUriExpMonth("08");
-        paymentTransfer.setSenderUriExpYear("2099");
-        paymentTransfer.setSenderUriCvc("123");
-
-        paymentTransfer.setRecipientFirstName("John");
-        paymentTransfer.setRecipientLastName("Smith");
-        paymentTransfer.setRecipientAddressLine1("2 Main St");
-        paymentTransfer.setRecipientCity("OFallon");
-        paymentTransfer.setRecipientPostalCode("63368");
-        paymentTransfer.setRecipientUriIdentifier("5509670000000187");
-        paymentTransfer.setRecipientUriExpYear("2099");
-        paymentTransfer.setRecipientUriExpMonth("08");
-        paymentTransfer.setRecipientUriCvc("123");
-
-        paymentTransfer.setAmount("44");
-        paymentTransfer.setCurrency("USD");
-
-        model.addAttribute("paymentTransfer", paymentTransfer);
-        model.addAttribute("recipientUriSchemes", paymentTransfer.getRecipientUriSchemes());
-        model.addAttribute("fundingSources", paymentTransfer.getFundingSources());
-        return "index";
+    @PostMapping(value = "/createPaymentTransfer")
+    public CompletableFuture<ResponseEntity> createPaymentTransfer(@RequestHeader(value = PartnerRegistry.TENANT_HEADER, required = false) String tenant,
+                                                                   @RequestBody MastercardSendPaymentTransfer paymentTransferRequest) {
+        assignPartner(tenant, paymentTransferRequest);
+        return transfer(paymentTransferRequest);
     }
 
     /**
-     * Submits the form to check for recipient receiving eligibility.
-     * If eligible, then the payment will be transferred.
-     * @param paymentTransfer PaymentTransfer model bound to the form
-     * @param redirectAttrs for flash notifications when redirecting
-     * @return
+     * Transfer payments without holding a servlet thread while waiting for the API.
+     * @param tenant Tenant the transfer is made for, the default tenant if absent
+     * @param paymentTransferRequest PaymentTransfer model containing the transfer details
+     * @return 200 status code if the transfer was successful, 400 status code if unsuccessful or the tenant is unknown,
+     * 503 status code if the transfer executor is saturated or the api lane shed the transfer,
+     * 504 status code if the transfer took longer than async.timeout-millis
      */
-    @PostMapping("/submitForm")
-    public String submitForm(@ModelAttribute("paymentTransfer") MastercardSendPaymentTransfer paymentTransfer,
-                             RedirectAttributes redirectAttrs) {
-        paymentTransfer.setPartnerId(partnerId);
-        paymentTransfer.setSenderAccountUri();
-        paymentTransfer.setRecipientAccountUri();
-
-        PaymentTransfer response = service.create(paymentTransfer);
+    @PostMapping(value = "/async/createPaymentTransfer")
+    public DeferredResult<ResponseEntity> createPaymentTransferAsync(@RequestHeader(value = PartnerRegistry.TENANT_HEADER, required = false) String tenant,
+                                                                     @RequestBody MastercardSendPaymentTransfer paymentTransferRequest) {
+        assignPartner(tenant, paymentTransferRequest);
+        DeferredResult<ResponseEntity> result = new DeferredResult<>(transferExecutor.getTimeoutMillis(),
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(null));
         try {
-            redirectAttrs.addFlashAttribute("request", service.getRequest()); // JSON request will be displayed
-            if (response != null) {
-                redirectAttrs.addFlashAttribute("response", new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(response)); // JSON response will be displayed
-                redirectAttrs.addFlashAttribute("success", "Payment for " + paymentTransfer.getRecipientFirstName() + " " + paymentTransfer.getRecipientLastName() + " was successfully made!");
-                return "redirect:/";
-            } else {
-                redirectAttrs.addFlashAttribute("response", service.getError());
-                redirectAttrs.addFlashAttribute("error", "Failed to create payment transfer. ");
-                return "redirect:/";
-            }
-        } catch (JsonProcessingException e) {
-            System.err.println("Unable to convert response to JSON String.");
-            return null;
+            CompletableFuture<ResponseEntity> transfer = transferExecutor.submitAsync(() -> transfer(paymentTransferRequest));
+            transfer.whenComplete((response, e) -> {
+                if (e == null) {
+                    result.setResult(response);
+                } else if (e.getCause() instanceof RateLimitExceededException) {
+                    result.setResult(rateLimited((RateLimitExceededException) e.getCause()));
+                } else if (e.getCause() instanceof AdmissionRejectedException) {
+                    result.setResult(shed((AdmissionRejectedException) e.getCause()));
+                } else {
+                    result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null));
         }
+        return result;
     }
 
     /**
-     * Transfer payments directly. Used for testing.
-     * @param paymentTransferRequest PaymentTransfer model containing the transfer details
-     * @return 200 status code if the transfer was successful, 400 status code if unsuccessful
+     * Transfer a batch of payments.
+     * The body is either newline delimited JSON or a JSON array of PaymentTransfer models and is read as it arrives.
+     * Each transfer is checked for eligibility and pushed with the concurrency configured by bulk.concurrency.
+     * @param tenant Tenant every transfer is made for, the default tenant if absent
+     * @param request Request whose body is streamed
+     * @return 200 status code with one JSON result line per transfer, written as each transfer completes,
+     * 400 status code if the tenant is unknown
      */
-    @PostMapping(value = "/createPaymentTransfer")
-    public ResponseEntity createPaymentTransfer(@RequestBody MastercardSendPaymentTransfer paymentTransferRequest) {
-        if (service.isEligible(paymentTransferRequest)) {
-            PaymentTransfer response = service.create(paymentTransferRequest);
-            if (response != null) {
-                return ResponseEntity.ok(response);
-            }
+    @PostMapping(value = "/createPaymentTransfers")
+    public ResponseEntity<StreamingResponseBody> createPaymentTransfers(@RequestHeader(value = PartnerRegistry.TENANT_HEADER, required = false) String tenant,
+                                                                        HttpServletRequest request) {
+        String partnerId = partners.get(tenant).getPartnerId();
+        StreamingResponseBody results = out -> bulkService.transfer(request.getInputStream(), out, partnerId);
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(results);
+    }
+
+    /**
+     * Look up a payment transfer and its current status, by transfer ID or by the transfer reference it was sent with.
+     * Transfers created or read recently are answered from the status cache without calling the API.
+     * @param tenant Tenant the transfer was made for, the default tenant if absent
+     * @param id Transfer ID assigned by the API
+     * @param reference Transfer reference, used when no ID is given
+     * @return 200 status code with the payment transfer, 400 status code if neither is given or the tenant is unknown,
+     * 404 status code if there is no such transfer, 502 status code if the API call failed
+     */
+    @GetMapping("/paymentTransfer")
+    public ResponseEntity<PaymentTransfer> readPaymentTransfer(@RequestHeader(value = PartnerRegistry.TENANT_HEADER, required = false) String tenant,
+                                                               @RequestParam(required = false) String id,
+                                                               @RequestParam(required = false) String reference) {
+        if ((id == null || id.isEmpty()) && (reference == null || reference.isEmpty())) {
             return ResponseEntity.badRequest().body(null);
         }
+        String partnerId = partners.get(tenant).getPartnerId();
+        try {
+            PaymentTransfer transfer = id != null && !id.isEmpty()
+                    ? service.readPaymentTransfer(partnerId, id)
+                    : service.readPaymentTransferByReference(partnerId, reference);
+            return transfer == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(transfer);
+        } catch (SendApiException e) {
+            return ResponseEntity.status(e.getHttpStatus() == 404 ? HttpStatus.NOT_FOUND : HttpStatus.BAD_GATEWAY).body(null);
+        }
+    }
+
+    /**
+     * Counters of the eligibility cache.
+     * @return 200 status code with the cache hits, misses, evictions and current size
+     */
+    @GetMapping("/stats/eligibilityCache")
+    public ResponseEntity<Map<String, Long>> eligibilityCacheStats() {
+        EligibilityCache cache = service.getEligibilityCache();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", cache.getHits());
+        stats.put("misses", cache.getMisses());
+        stats.put("evictions", cache.getEvictions());
+        stats.put("size", (long) cache.size());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Admit a transfer in the api lane, check the recipient eligibility and make the transfer.
+     * @param paymentTransfer PaymentTransfer model whose partner is already assigned
+     * @return Future of the response: 200 status code if the transfer was successful, 400 status code if unsuccessful
+     */
+    private CompletableFuture<ResponseEntity> transfer(MastercardSendPaymentTransfer paymentTransfer) {
+        return admission.submit(AdmissionScheduler.Lane.API, () -> {
+            if (!service.isEligible(paymentTransfer)) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
+            }
+            return service.createAsync(paymentTransfer).thenApply(outcome -> outcome.isSuccess()
+                    ? ResponseEntity.ok(outcome.getResponse())
+                    : ResponseEntity.badRequest().body(null));
+        });
+    }
+
+    /**
+     * Set the partner ID of the tenant named by the header, or of the default tenant.
+     * The partner ID of the body is replaced, as callers must not choose the credentials their transfer is signed with.
+     * @param tenant Tenant named by the request, null if none
+     * @param paymentTransfer PaymentTransfer model containing the transfer details
+     * @throws UnknownTenantException if the tenant is not configured
+     */
+    private void assignPartner(String tenant, MastercardSendPaymentTransfer paymentTransfer) {
+        paymentTransfer.setPartnerId(partners.get(tenant).getPartnerId());
+    }
+
+    /**
+     * Reject requests naming a tenant this node does not serve.
+     * @param e Exception thrown when looking up the tenant
+     * @return 400 status code
+     */
+    @ExceptionHandler(UnknownTenantException.class)
+    public ResponseEntity unknownTenant(UnknownTenantException e) {
         return ResponseEntity.badRequest().body(null);
     }
+
+    /**
+     * Reject transfers shed by their admission lane, which would otherwise wait past their deadline.
+     * @param e Exception thrown when the transfer was shed
+     * @return 503 status code with the Retry-After header in seconds
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity shed(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(null);
+    }
+
+    /**
+     * Reject calls beyond the partner budget of API calls instead of letting the API throttle them.
+     * @param e Exception thrown when the budget ran out
+     * @return 429 status code with the Retry-After header in seconds
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity rateLimited(RateLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(null);
+    }
 }
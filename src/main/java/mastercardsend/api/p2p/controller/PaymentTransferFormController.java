@@ -0,0 +1,236 @@
+package mastercardsend.api.p2p.controller;
+
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.AdmissionRejectedException;
+import mastercardsend.api.p2p.service.AdmissionScheduler;
+import mastercardsend.api.p2p.service.MastercardService;
+import mastercardsend.api.p2p.service.PartnerRegistry;
+import mastercardsend.api.p2p.service.RateLimitExceededException;
+import mastercardsend.api.p2p.service.TransferExecutor;
+import mastercardsend.api.p2p.service.TransferOutcome;
+import mastercardsend.api.p2p.service.UnknownTenantException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Form UI transferring payments, left out of the api profile which only serves the JSON endpoints
+ * of {@link PaymentTransferController}.
+ */
+@Controller
+@Profile("!api")
+public class PaymentTransferFormController {
+    @Autowired
+    private MastercardService service;
+
+    @Autowired
+    private TransferExecutor transferExecutor;
+
+    // Admits the transfers of the form in the interactive lane, ahead of api and bulk transfers
+    @Autowired
+    private AdmissionScheduler admission;
+
+    // Partners selected per request with the X-Partner-Tenant header, e.g. set by a proxy per host name
+    @Autowired
+    private PartnerRegistry partners;
+
+    /**
+     * Index page displays a form to transfer payments.
+     * Visit localhost:8080 to view.
+     * @param model Spring model for adding attributes
+     * @return index page
+     */
+    @GetMapping("/")
+    public String index(Model model) {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+
+        paymentTransfer.setSenderFirstName("Jane");
+        paymentTransfer.setSenderLastName("Smith");
+        paymentTransfer.setSenderAddressLine1("1 Main St");
+        paymentTransfer.setSenderCity("OFallon");
+        paymentTransfer.setSenderPostalCode("63368");
+        paymentTransfer.setSenderCountrySubdivision("MO");
+        paymentTransfer.setSenderCountry("USA");
+        paymentTransfer.setSenderUriIdentifier("5509670000000187");
+        paymentTransfer.setSenderUriExpMonth("08");
+        paymentTransfer.setSenderUriExpYear("2099");
+        paymentTransfer.setSenderUriCvc("123");
+
+        paymentTransfer.setRecipientFirstName("John");
+        paymentTransfer.setRecipientLastName("Smith");
+        paymentTransfer.setRecipientAddressLine1("2 Main St");
+        paymentTransfer.setRecipientCity("OFallon");
+        paymentTransfer.setRecipientPostalCode("63368");
+        paymentTransfer.setRecipientUriIdentifier("5509670000000187");
+        paymentTransfer.setRecipientUriExpYear("2099");
+        paymentTransfer.setRecipientUriExpMonth("08");
+        paymentTransfer.setRecipientUriCvc("123");
+
+        paymentTransfer.setAmount(Amount.valueOf("44"));
+        paymentTransfer.setCurrency("USD");
+        paymentTransfer.setTransferReference(UUID.randomUUID().toString()); // identifies this form submission
+
+        model.addAttribute("paymentTransfer", paymentTransfer);
+        model.addAttribute("recipientUriSchemes", MastercardSendPaymentTransfer.getRecipientUriSchemes());
+        model.addAttribute("fundingSources", MastercardSendPaymentTransfer.getFundingSources());
+        return "index";
+    }
+
+    /**
+     * Submits the form to check for recipient receiving eligibility.
+     * If eligible, then the payment will be transferred.
+     * The servlet thread makes the first attempt if the interactive lane admits the transfer at once,
+     * and is released if the transfer waits for admission or is retried.
+     * @param tenant Tenant the transfer is made for, the default tenant if absent
+     * @param paymentTransfer PaymentTransfer model bound to the form
+     * @param redirectAttrs for flash notifications when redirecting
+     * @return the redirect, completed once the transfer completes
+     */
+    @PostMapping("/submitForm")
+    public CompletableFuture<String> submitForm(@RequestHeader(value = PartnerRegistry.TENANT_HEADER, required = false) String tenant,
+                                                @ModelAttribute("paymentTransfer") MastercardSendPaymentTransfer paymentTransfer,
+                                                RedirectAttributes redirectAttrs) {
+        try {
+            paymentTransfer.setPartnerId(partners.get(tenant).getPartnerId());
+        } catch (UnknownTenantException e) {
+            return CompletableFuture.completedFuture(showUnknownTenant(e, redirectAttrs));
+        }
+        paymentTransfer.setSenderAccountUri();
+        paymentTransfer.setRecipientAccountUri();
+
+        return admission.submit(AdmissionScheduler.Lane.INTERACTIVE, () -> service.createAsync(paymentTransfer))
+                .handle((outcome, e) -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause == null) {
+                        return showOutcome(paymentTransfer, outcome, redirectAttrs);
+                    } else if (cause instanceof RateLimitExceededException) {
+                        return showRateLimited((RateLimitExceededException) cause, redirectAttrs);
+                    } else if (cause instanceof AdmissionRejectedException) {
+                        return showShed((AdmissionRejectedException) cause, redirectAttrs);
+                    }
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+    }
+
+    /**
+     * Submits the form without holding a servlet thread while the payment is transferred.
+     * Responds with an error if the transfer executor is saturated or the transfer takes longer than async.timeout-millis.
+     * @param tenant Tenant the transfer is made for, the default tenant if absent
+     * @param paymentTransfer PaymentTransfer model bound to the form
+     * @param redirectAttrs for flash notifications when redirecting
+     * @return the redirect, set once the transfer completes
+     */
+    @PostMapping("/async/submitForm")
+    public DeferredResult<String> submitFormAsync(@RequestHeader(value = PartnerRegistry.TENANT_HEADER, required = false) String tenant,
+                                                  @ModelAttribute("paymentTransfer") MastercardSendPaymentTransfer paymentTransfer,
+                                                  RedirectAttributes redirectAttrs) {
+        DeferredResult<String> result = new DeferredResult<>(transferExecutor.getTimeoutMillis());
+        try {
+            paymentTransfer.setPartnerId(partners.get(tenant).getPartnerId());
+        } catch (UnknownTenantException e) {
+            result.setResult(showUnknownTenant(e, redirectAttrs));
+            return result;
+        }
+        paymentTransfer.setSenderAccountUri();
+        paymentTransfer.setRecipientAccountUri();
+
+        result.onTimeout(() -> {
+            synchronized (result) {
+                redirectAttrs.addFlashAttribute("error", "Payment transfer timed out. ");
+                result.setResult("redirect:/");
+            }
+        });
+        try {
+            // the executor thread makes the first attempt, retries complete the inner future later
+            CompletableFuture<TransferOutcome> transfer = transferExecutor
+                    .submitAsync(() -> admission.submit(AdmissionScheduler.Lane.INTERACTIVE, () -> service.createAsync(paymentTransfer)));
+            transfer.whenComplete((outcome, e) -> {
+                synchronized (result) {
+                    if (result.isSetOrExpired()) {
+                        return;
+                    }
+                    if (e != null && e.getCause() instanceof RateLimitExceededException) {
+                        result.setResult(showRateLimited((RateLimitExceededException) e.getCause(), redirectAttrs));
+                    } else if (e != null && e.getCause() instanceof AdmissionRejectedException) {
+                        result.setResult(showShed((AdmissionRejectedException) e.getCause(), redirectAttrs));
+                    } else if (e != null) {
+                        redirectAttrs.addFlashAttribute("error", "Failed to create payment transfer. ");
+                        result.setResult("redirect:/");
+                    } else {
+                        result.setResult(showOutcome(paymentTransfer, outcome, redirectAttrs));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            redirectAttrs.addFlashAttribute("error", "Too many payment transfers in progress, please try again. ");
+            result.setResult("redirect:/");
+        }
+        return result;
+    }
+
+    /**
+     * Add the unknown tenant error as a flash attribute.
+     * @param e Exception thrown when looking up the tenant
+     * @param redirectAttrs for flash notifications when redirecting
+     * @return redirect to the index page
+     */
+    private String showUnknownTenant(UnknownTenantException e, RedirectAttributes redirectAttrs) {
+        redirectAttrs.addFlashAttribute("error", "Payments can not be transferred for " + e.getTenant() + ". ");
+        return "redirect:/";
+    }
+
+    /**
+     * Add the error of a transfer shed by the admission scheduler as a flash attribute.
+     * @param e Exception thrown when the transfer was shed
+     * @param redirectAttrs for flash notifications when redirecting
+     * @return redirect to the index page
+     */
+    private String showShed(AdmissionRejectedException e, RedirectAttributes redirectAttrs) {
+        redirectAttrs.addFlashAttribute("error", "Too many payment transfers in progress, please try again in " + e.getRetryAfterSeconds() + " seconds. ");
+        return "redirect:/";
+    }
+
+    /**
+     * Add the rate limit error as a flash attribute.
+     * @param e Exception thrown when the budget ran out
+     * @param redirectAttrs for flash notifications when redirecting
+     * @return redirect to the index page
+     */
+    private String showRateLimited(RateLimitExceededException e, RedirectAttributes redirectAttrs) {
+        redirectAttrs.addFlashAttribute("error", "Too many payment transfers, please try again in " + e.getRetryAfterSeconds() + " seconds. ");
+        return "redirect:/";
+    }
+
+    /**
+     * Add the request and the response or error of a transfer as flash attributes.
+     * @param paymentTransfer PaymentTransfer model bound to the form
+     * @param outcome Outcome of the transfer
+     * @param redirectAttrs for flash notifications when redirecting
+     * @return redirect to the index page
+     */
+    private String showOutcome(MastercardSendPaymentTransfer paymentTransfer, TransferOutcome outcome,
+                               RedirectAttributes redirectAttrs) {
+        redirectAttrs.addFlashAttribute("request", outcome.getRequest()); // JSON request will be displayed
+        if (outcome.isSuccess()) {
+            redirectAttrs.addFlashAttribute("response", outcome.getResponseJson()); // JSON response will be displayed
+            redirectAttrs.addFlashAttribute("success", "Payment for " + paymentTransfer.getRecipientFirstName() + " " + paymentTransfer.getRecipientLastName() + " was successfully made!");
+        } else {
+            redirectAttrs.addFlashAttribute("response", outcome.getError().toString());
+            redirectAttrs.addFlashAttribute("error", "Failed to create payment transfer. ");
+        }
+        return "redirect:/";
+    }
+}
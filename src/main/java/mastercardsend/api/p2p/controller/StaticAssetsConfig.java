@@ -0,0 +1,58 @@
+package mastercardsend.api.p2p.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.CssLinkResourceTransformer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the form assets under /css and /js with content-hashed file names, e.g. /css/form-6f1ed002ab5595859014ebf0951522d9.css,
+ * which the templates get from @{...} links through the {@link ResourceUrlEncodingFilter}. As a changed file gets a new
+ * name, responses are cached by browsers for static.cache-max-age-days and marked immutable, so they are not revalidated.
+ * The gzip variants written at build time by src/build/java/.../AssetCompressor.java are served to clients accepting gzip,
+ * and resolved resources are cached so that hashes are computed once per file.
+ */
+@Configuration
+@Profile("!api")
+public class StaticAssetsConfig implements WebMvcConfigurer {
+    @Value("${static.cache-max-age-days:365}")
+    private long cacheMaxAgeDays;
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        addAssets(registry, "css");
+        addAssets(registry, "js");
+    }
+
+    /**
+     * Serve one asset directory under its own path only, so that e.g. /css/ never resolves a script.
+     * @param registry Registry of the resource handlers
+     * @param directory Directory under classpath:/static/, also the URL path of its assets
+     */
+    private void addAssets(ResourceHandlerRegistry registry, String directory) {
+        registry.addResourceHandler("/" + directory + "/**")
+                .addResourceLocations("classpath:/static/" + directory + "/")
+                .setCacheControl(CacheControl.maxAge(cacheMaxAgeDays, TimeUnit.DAYS).cachePublic().immutable())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                .addTransformer(new CssLinkResourceTransformer());
+    }
+
+    /**
+     * @return Filter rewriting the asset links of the rendered pages to their content-hashed names
+     */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
+}
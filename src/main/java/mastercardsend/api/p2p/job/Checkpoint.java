@@ -0,0 +1,210 @@
+package mastercardsend.api.p2p.job;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Progress of a disbursement job, appended to a text file as tab-separated lines:
+ * <ul>
+ * <li>file, followed by the size of the input, written when the checkpoint is created</li>
+ * <li>row, followed by the file offset, status and transfer ID or error of a row, written when the row completes</li>
+ * <li>offset, followed by a file offset before which every row has completed, written every few rows</li>
+ * </ul>
+ * A resumed job starts reading at the last offset and skips the rows after it that are already recorded,
+ * so only the rows in flight when the job stopped are sent again. Row lines are written to the file as soon as
+ * each row completes, so they survive the process being killed; offset lines also force the file to disk.
+ */
+public class Checkpoint implements Closeable {
+    private static final String FILE = "file";
+    private static final String ROW = "row";
+    private static final String OFFSET = "offset";
+
+    private final FileChannel channel;
+    private final int offsetEvery;
+    // Offset from which the job resumes, and the rows after it completed by previous runs
+    private final long resumeOffset;
+    private final Set<Long> completed;
+
+    private final Lock lock = new ReentrantLock();
+    // Offsets of the rows sent and not completed yet, guarded by lock
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    // Offset after the last row read, guarded by lock
+    private long readOffset;
+    private long rowsSinceOffset;
+
+    private Checkpoint(FileChannel channel, int offsetEvery, long resumeOffset, Set<Long> completed) {
+        this.channel = channel;
+        this.offsetEvery = offsetEvery;
+        this.resumeOffset = resumeOffset;
+        this.completed = completed;
+        this.readOffset = resumeOffset;
+    }
+
+    /**
+     * Open the checkpoint of an input file, reading the progress recorded by a previous run if any.
+     * @param file Checkpoint file, created if it does not exist
+     * @param inputSize Size of the input file in bytes
+     * @param offsetEvery Number of completed rows between two offset lines
+     * @return The checkpoint
+     * @throws IOException if the checkpoint can not be read or written
+     * @throws IllegalStateException if the checkpoint was written for an input of another size
+     */
+    public static Checkpoint open(Path file, long inputSize, int offsetEvery) throws IOException {
+        long offset = 0;
+        Set<Long> completed = new HashSet<>();
+        boolean exists = Files.exists(file);
+        if (exists) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", 4);
+                    try {
+                        if (FILE.equals(fields[0]) && Long.parseLong(fields[1]) != inputSize) {
+                            throw new IllegalStateException("Checkpoint " + file + " was written for an input of "
+                                    + fields[1] + " bytes, not " + inputSize + ".");
+                        } else if (OFFSET.equals(fields[0])) {
+                            long next = Long.parseLong(fields[1]);
+                            if (next > offset) {
+                                offset = next;
+                                long watermark = offset;
+                                completed.removeIf(row -> row < watermark);
+                            }
+                        } else if (ROW.equals(fields[0]) && fields.length >= 3) { // offset complete if followed by a tab
+                            long row = Long.parseLong(fields[1]);
+                            if (row >= offset) {
+                                completed.add(row);
+                            }
+                        }
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        // last line cut short when the previous run stopped
+                    }
+                }
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        Checkpoint checkpoint = new Checkpoint(channel, offsetEvery, offset, completed);
+        if (!exists) {
+            checkpoint.write(FILE + '\t' + inputSize + '\n');
+        } else if (channel.size() > 0 && !endsWithLineFeed(file, channel.size())) {
+            checkpoint.write("\n");
+        }
+        return checkpoint;
+    }
+
+    private static boolean endsWithLineFeed(Path file, long size) throws IOException {
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * @return File offset from which the job resumes, 0 for a new job
+     */
+    public long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * @param rowOffset File offset of a row after the resume offset
+     * @return True if a previous run completed the row
+     */
+    public boolean isCompleted(long rowOffset) {
+        return completed.contains(rowOffset);
+    }
+
+    /**
+     * Record a row about to be sent.
+     * @param rowOffset File offset of the row
+     * @param nextOffset File offset of the next row
+     */
+    public void started(long rowOffset, long nextOffset) {
+        lock.lock();
+        try {
+            inFlight.add(rowOffset);
+            readOffset = nextOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a row that is not sent, a blank line or a row completed by a previous run.
+     * @param nextOffset File offset of the next row
+     */
+    public void skipped(long nextOffset) {
+        lock.lock();
+        try {
+            readOffset = nextOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the outcome of a row.
+     * @param rowOffset File offset of the row
+     * @param status Status of the row
+     * @param detail Transfer ID or error, null for none
+     * @throws IOException if the checkpoint can not be written
+     */
+    public void completed(long rowOffset, String status, String detail) throws IOException {
+        String line = ROW + '\t' + rowOffset + '\t' + status + '\t'
+                + (detail == null ? "" : detail.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ')) + '\n';
+        lock.lock();
+        try {
+            write(line);
+            inFlight.remove(rowOffset);
+            if (++rowsSinceOffset >= offsetEvery) {
+                writeOffset();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the offset before which every row has completed and force the checkpoint to disk.
+     * @throws IOException if the checkpoint can not be written
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            writeOffset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeOffset() throws IOException {
+        long offset = inFlight.isEmpty() ? readOffset : inFlight.first();
+        write(OFFSET + '\t' + offset + '\n');
+        channel.force(false);
+        rowsSinceOffset = 0;
+    }
+
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
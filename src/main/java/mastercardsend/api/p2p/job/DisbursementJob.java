@@ -0,0 +1,207 @@
+package mastercardsend.api.p2p.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.AdmissionScheduler;
+import mastercardsend.api.p2p.service.BulkTransferService;
+import mastercardsend.api.p2p.service.Eligibility;
+import mastercardsend.api.p2p.service.MastercardService;
+import mastercardsend.api.p2p.service.PartnerRegistry;
+import mastercardsend.api.p2p.service.Threads;
+import mastercardsend.api.p2p.service.TransferOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command-line job pushing the payment transfers of a disbursement file, one per line, instead of replaying them
+ * through /createPaymentTransfer. Started with the job.input property, P2pApplication then runs without the web
+ * server and exits when the file is done:
+ * <pre>
+ * java -jar p2p.jar --job.input=disbursements.csv --job.parallelism=32
+ * </pre>
+ * The file is read through {@link MappedLineReader} and each row is parsed as it is read, so the file is never held
+ * in memory. Rows are checked for eligibility and pushed with job.parallelism rows in flight, and their outcome is
+ * recorded in the {@link Checkpoint} file job.checkpoint, by default the input followed by .checkpoint. Running the
+ * job again with the same checkpoint resumes where it stopped. Rows in flight when a run stopped are sent again,
+ * so rows should carry a transfer_reference for the API to reject the duplicate.
+ * <p>
+ * Other properties: job.format (ndjson or csv, by default from the file extension), job.window-bytes (size of
+ * the mapped window, the longest line) and job.checkpoint-every (rows between two checkpoint offsets).
+ * Every row is sent for the partner of the job.tenant tenant, by default the partnerId property, whatever its partner_id.
+ */
+@Component
+@ConditionalOnProperty(name = "job.input")
+public class DisbursementJob implements ApplicationRunner, ExitCodeGenerator {
+    private static final Logger log = LoggerFactory.getLogger(DisbursementJob.class);
+
+    private final MastercardService service;
+    private final AdmissionScheduler admission;
+    private final ObjectMapper mapper;
+    private final Path input;
+    private final Path checkpointFile;
+    private final String format;
+    private final int parallelism;
+    private final int windowBytes;
+    private final int checkpointEvery;
+    private final String partnerId;
+    private final boolean virtualThreads;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder ineligible = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile int exitCode;
+
+    /**
+     * @param service Service making the eligibility and payment transfer calls
+     * @param admission Scheduler admitting the transfers in the bulk lane
+     * @param mapper Jackson mapper binding the records
+     * @param partners Partners served, one of which is the partner every row is sent for
+     * @param env Environment from which property details are obtained
+     */
+    @Autowired
+    public DisbursementJob(MastercardService service, AdmissionScheduler admission, ObjectMapper mapper,
+                           PartnerRegistry partners, Environment env) {
+        this.service = service;
+        this.admission = admission;
+        this.mapper = mapper;
+        this.input = Paths.get(env.getProperty("job.input"));
+        this.checkpointFile = Paths.get(env.getProperty("job.checkpoint", input + ".checkpoint"));
+        this.format = env.getProperty("job.format", input.toString().toLowerCase().endsWith(".csv") ? "csv" : "ndjson");
+        this.parallelism = env.getProperty("job.parallelism", Integer.class, 16);
+        this.windowBytes = env.getProperty("job.window-bytes", Integer.class, 64 * 1024 * 1024);
+        this.checkpointEvery = env.getProperty("job.checkpoint-every", Integer.class, 1000);
+        this.partnerId = partners.get(env.getProperty("job.tenant")).getPartnerId();
+        this.virtualThreads = Threads.isVirtual(env);
+    }
+
+    /**
+     * @param args Command line arguments of the application
+     * @return True if the arguments start a job rather than the web application
+     */
+    public static boolean isRequested(String... args) {
+        for (String arg : args) {
+            if (arg.startsWith("--job.input=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Threads.factory("job-", true))
+                : Executors.newFixedThreadPool(parallelism, Threads.factory("job-", false));
+        Semaphore permits = new Semaphore(parallelism);
+        long skipped = 0;
+        try (MappedLineReader lines = new MappedLineReader(input, 0, windowBytes);
+             Checkpoint checkpoint = Checkpoint.open(checkpointFile, lines.size(), checkpointEvery)) {
+            RecordParser parser = RecordParser.of(mapper, format,
+                    lines.next() ? new String(lines.line(), 0, lines.lineLength(), StandardCharsets.UTF_8) : "");
+            long offset = Math.max(checkpoint.getResumeOffset(), parser.hasHeader() ? lines.nextOffset() : 0);
+            log.info("Disbursement job {} ({} bytes) starting at offset {}, checkpoint {}", input, lines.size(), offset, checkpointFile);
+            try (MappedLineReader rows = new MappedLineReader(input, offset, windowBytes)) {
+                while (exitCode == 0 && rows.next()) {
+                    long rowOffset = rows.lineOffset();
+                    if (rows.lineLength() == 0 || checkpoint.isCompleted(rowOffset)) {
+                        checkpoint.skipped(rows.nextOffset());
+                        skipped++;
+                        continue;
+                    }
+                    MastercardSendPaymentTransfer paymentTransfer;
+                    try {
+                        paymentTransfer = parser.parse(rows.line(), rows.lineLength());
+                    } catch (IOException | RuntimeException e) { // malformed row, record it and go on
+                        checkpoint.skipped(rows.nextOffset());
+                        checkpoint.completed(rowOffset, BulkTransferService.FAILED, "Could not read payment transfer: " + e.getMessage());
+                        failed.increment();
+                        continue;
+                    }
+                    paymentTransfer.setPartnerId(partnerId); // a row does not choose the credentials it is signed with
+                    permits.acquire();
+                    checkpoint.started(rowOffset, rows.nextOffset());
+                    executor.execute(() -> {
+                        try {
+                            push(checkpoint, rowOffset, paymentTransfer);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            } finally {
+                // wait for the rows in flight before recording the final offset
+                permits.acquireUninterruptibly(parallelism);
+                checkpoint.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            exitCode = 1;
+            throw e;
+        } finally {
+            executor.shutdown();
+            log.info("Disbursement job {}: {} succeeded, {} ineligible, {} failed, {} skipped in {} s",
+                    exitCode == 0 ? "completed" : "stopped", succeeded.sum(), ineligible.sum(), failed.sum(), skipped,
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Check the recipient eligibility, push a single payment transfer once admitted in the bulk lane, and record its outcome.
+     * @param checkpoint Checkpoint receiving the outcome
+     * @param rowOffset File offset of the row
+     * @param paymentTransfer PaymentTransfer model containing the transfer details
+     */
+    private void push(Checkpoint checkpoint, long rowOffset, MastercardSendPaymentTransfer paymentTransfer) {
+        String status;
+        String detail;
+        try (AdmissionScheduler.Permit permit = admission.acquire(AdmissionScheduler.Lane.BULK)) {
+            Eligibility eligibility = service.checkEligibility(paymentTransfer);
+            if (!eligibility.isEligible()) {
+                status = eligibility.isCacheable() ? BulkTransferService.INELIGIBLE : BulkTransferService.FAILED;
+                detail = eligibility.getError().getReasonCode() + ' ' + eligibility.getError().getMessage();
+            } else {
+                TransferOutcome outcome = service.create(paymentTransfer);
+                if (outcome.isSuccess()) {
+                    status = BulkTransferService.SUCCESS;
+                    detail = (String) outcome.getResponse().get("payment_transfer.id");
+                } else {
+                    status = BulkTransferService.FAILED;
+                    detail = outcome.getError().getReasonCode() + ' ' + outcome.getError().getMessage();
+                }
+            }
+        } catch (RuntimeException e) {
+            status = BulkTransferService.FAILED;
+            detail = e.getMessage();
+        }
+        (BulkTransferService.SUCCESS.equals(status) ? succeeded
+                : BulkTransferService.INELIGIBLE.equals(status) ? ineligible : failed).increment();
+        try {
+            checkpoint.completed(rowOffset, status, detail);
+        } catch (IOException e) {
+            exitCode = 1;
+            log.error("Could not checkpoint row at offset {}: {}", rowOffset, e.getMessage());
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
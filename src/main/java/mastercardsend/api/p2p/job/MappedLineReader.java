@@ -0,0 +1,131 @@
+package mastercardsend.api.p2p.job;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a file through a memory-mapped window that slides along the file, so files far larger than
+ * the heap are read without copying them through stream buffers. Only the current line is copied, into a buffer
+ * reused from line to line. A line must fit in the window; line feeds end lines and a carriage return before one
+ * is dropped.
+ */
+public class MappedLineReader implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+    private final int windowBytes;
+    private MappedByteBuffer window;
+    // File offset of the first byte of the window
+    private long windowStart;
+    // File offset of the next line
+    private long position;
+    private long lineStart;
+    private byte[] line = new byte[1024];
+    private int lineLength;
+
+    /**
+     * @param file File to read
+     * @param offset File offset of the first line to read, which must be the start of a line
+     * @param windowBytes Size of the mapped window, the longest line that can be read
+     * @throws IOException if the file can not be opened
+     */
+    public MappedLineReader(Path file, long offset, int windowBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+        this.position = offset;
+    }
+
+    /**
+     * Move to the next line.
+     * @return False at the end of the file
+     * @throws IOException if the file can not be mapped or a line is longer than the window
+     */
+    public boolean next() throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        if (window == null || position >= windowStart + window.limit()) {
+            map(position);
+        }
+        int start = (int) (position - windowStart);
+        int end = indexOfLineFeed(start);
+        if (end < 0 && windowStart + window.limit() < size) {
+            // the line continues past the window, slide the window to its start
+            map(position);
+            start = 0;
+            end = indexOfLineFeed(start);
+            if (end < 0 && window.limit() < size - windowStart) {
+                throw new IOException("Line at offset " + position + " is longer than " + windowBytes + " bytes.");
+            }
+        }
+        int contentEnd = end < 0 ? window.limit() : end;
+        if (contentEnd > start && window.get(contentEnd - 1) == '\r') {
+            contentEnd--;
+        }
+        lineLength = contentEnd - start;
+        if (line.length < lineLength) {
+            line = new byte[Math.max(lineLength, line.length * 2)];
+        }
+        window.position(start);
+        window.get(line, 0, lineLength);
+        lineStart = position;
+        position = windowStart + (end < 0 ? window.limit() : end + 1);
+        return true;
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowBytes, size - offset));
+    }
+
+    private int indexOfLineFeed(int from) {
+        for (int i = from, limit = window.limit(); i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The bytes of the current line, valid until the next call to {@link #next()}
+     */
+    public byte[] line() {
+        return line;
+    }
+
+    /**
+     * @return Length of the current line, without its line terminator
+     */
+    public int lineLength() {
+        return lineLength;
+    }
+
+    /**
+     * @return File offset of the current line
+     */
+    public long lineOffset() {
+        return lineStart;
+    }
+
+    /**
+     * @return File offset of the line after the current one
+     */
+    public long nextOffset() {
+        return position;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
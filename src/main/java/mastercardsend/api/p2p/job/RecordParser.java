@@ -0,0 +1,138 @@
+package mastercardsend.api.p2p.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses one line of a disbursement file into a payment transfer.
+ * NDJSON lines are the JSON records accepted by /createPaymentTransfers. CSV files start with a header naming the same
+ * snake_case properties, e.g. amount,currency,recipient_account_uri, and fields may be quoted with double quotes
+ * but not span lines.
+ */
+public abstract class RecordParser {
+    protected final ObjectReader reader;
+
+    RecordParser(ObjectMapper mapper) {
+        this.reader = mapper.readerFor(MastercardSendPaymentTransfer.class);
+    }
+
+    /**
+     * @param mapper Jackson mapper binding the records
+     * @param format ndjson or csv
+     * @param header First line of the file, the column names of a CSV file
+     * @return Parser of the records of the format
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public static RecordParser of(ObjectMapper mapper, String format, String header) {
+        switch (format) {
+            case "ndjson":
+                return new Ndjson(mapper);
+            case "csv":
+                return new Csv(mapper, header);
+            default:
+                throw new IllegalArgumentException("Unknown job format " + format + ", expected ndjson or csv.");
+        }
+    }
+
+    /**
+     * @return True if the first line of the file is a header and not a record
+     */
+    public abstract boolean hasHeader();
+
+    /**
+     * @param line Buffer holding the line
+     * @param length Length of the line
+     * @return The payment transfer
+     * @throws IOException if the line is not a valid record
+     */
+    public abstract MastercardSendPaymentTransfer parse(byte[] line, int length) throws IOException;
+
+    static class Ndjson extends RecordParser {
+        Ndjson(ObjectMapper mapper) {
+            super(mapper);
+        }
+
+        @Override
+        public boolean hasHeader() {
+            return false;
+        }
+
+        @Override
+        public MastercardSendPaymentTransfer parse(byte[] line, int length) throws IOException {
+            return reader.readValue(line, 0, length);
+        }
+    }
+
+    static class Csv extends RecordParser {
+        private final ObjectMapper mapper;
+        private final List<String> columns;
+
+        Csv(ObjectMapper mapper, String header) {
+            super(mapper);
+            this.mapper = mapper;
+            this.columns = new ArrayList<>();
+            // a byte order mark would otherwise be part of the first column name
+            for (String column : split(header.startsWith("\uFEFF") ? header.substring(1) : header)) {
+                columns.add(column.trim());
+            }
+        }
+
+        @Override
+        public boolean hasHeader() {
+            return true;
+        }
+
+        @Override
+        public MastercardSendPaymentTransfer parse(byte[] line, int length) throws IOException {
+            List<String> fields = split(new String(line, 0, length, StandardCharsets.UTF_8));
+            if (fields.size() != columns.size()) {
+                throw new IOException("Expected " + columns.size() + " fields, found " + fields.size() + ".");
+            }
+            ObjectNode record = mapper.createObjectNode();
+            for (int i = 0; i < fields.size(); i++) {
+                if (!fields.get(i).isEmpty()) {
+                    record.put(columns.get(i), fields.get(i));
+                }
+            }
+            return reader.readValue(record);
+        }
+
+        /**
+         * @return The fields of a CSV line, with quotes removed and doubled quotes unescaped
+         */
+        static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
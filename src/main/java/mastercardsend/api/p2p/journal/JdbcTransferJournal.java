@@ -0,0 +1,263 @@
+package mastercardsend.api.p2p.journal;
+
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.TransferOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer journal stored in the bundled HSQLDB database.
+ * Entries are queued by the request threads and written behind by a single thread, which groups
+ * everything queued since its last write into one transaction, so that requests never wait for a disk flush.
+ * Rows are keyed by partner ID and transfer reference, as different partners may send the same reference.
+ */
+@Component
+public class JdbcTransferJournal implements TransferJournal {
+    private static final Logger log = LoggerFactory.getLogger(JdbcTransferJournal.class);
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS transfer_journal (" +
+            "partner_id VARCHAR(64) NOT NULL, " +
+            "transfer_reference VARCHAR(64) NOT NULL, " +
+            "amount VARCHAR(32), " +
+            "currency VARCHAR(3), " +
+            "status VARCHAR(16) NOT NULL, " +
+            "upstream_id VARCHAR(64), " +
+            "reason_code VARCHAR(64), " +
+            "created_at TIMESTAMP NOT NULL, " +
+            "updated_at TIMESTAMP NOT NULL, " +
+            "PRIMARY KEY (partner_id, transfer_reference))";
+    // Columns of the primary key, a single one in journals created before rows were keyed by partner
+    private static final String PRIMARY_KEY_COLUMNS = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE k " +
+            "JOIN INFORMATION_SCHEMA.TABLE_CONSTRAINTS c ON c.CONSTRAINT_SCHEMA = k.CONSTRAINT_SCHEMA " +
+            "AND c.CONSTRAINT_NAME = k.CONSTRAINT_NAME " +
+            "WHERE c.TABLE_NAME = 'TRANSFER_JOURNAL' AND c.CONSTRAINT_TYPE = 'PRIMARY KEY'";
+    private static final String[] MIGRATE_PRIMARY_KEY = {
+            "UPDATE transfer_journal SET partner_id = '' WHERE partner_id IS NULL",
+            "ALTER TABLE transfer_journal DROP PRIMARY KEY",
+            "ALTER TABLE transfer_journal ALTER COLUMN partner_id SET NOT NULL",
+            "ALTER TABLE transfer_journal ADD PRIMARY KEY (partner_id, transfer_reference)"};
+    // Insert, or restart a transfer sent again with the same reference
+    private static final String UPSERT = "MERGE INTO transfer_journal j USING (VALUES (CAST(? AS VARCHAR(64)), " +
+            "CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(32)), CAST(? AS VARCHAR(3)), CAST(? AS VARCHAR(16)), " +
+            "CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(64)), CAST(? AS TIMESTAMP))) " +
+            "AS v (partner_id, transfer_reference, amount, currency, status, upstream_id, reason_code, at) " +
+            "ON j.partner_id = v.partner_id AND j.transfer_reference = v.transfer_reference " +
+            "WHEN MATCHED THEN UPDATE SET j.status = v.status, j.upstream_id = v.upstream_id, " +
+            "j.reason_code = v.reason_code, j.updated_at = v.at " +
+            "WHEN NOT MATCHED THEN INSERT (transfer_reference, partner_id, amount, currency, status, upstream_id, " +
+            "reason_code, created_at, updated_at) VALUES (v.transfer_reference, v.partner_id, v.amount, v.currency, " +
+            "v.status, v.upstream_id, v.reason_code, v.at, v.at)";
+    private static final String UPDATE = "UPDATE transfer_journal SET status = ?, upstream_id = ?, reason_code = ?, updated_at = ? " +
+            "WHERE partner_id = ? AND transfer_reference = ?";
+    private static final String FIND_ID = "SELECT upstream_id FROM transfer_journal WHERE partner_id = ? AND transfer_reference = ?";
+    private static final String RECOVER = "UPDATE transfer_journal SET status = ?, updated_at = ? WHERE status = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Entry> queue;
+    // Maximum number of entries written in one transaction
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * @param jdbcTemplate Template on the journal database
+     * @param transactionManager Transaction manager of the journal database
+     * @param env Environment from which property details are obtained
+     */
+    @Autowired
+    public JdbcTransferJournal(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Environment env) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new LinkedBlockingQueue<>(env.getProperty("journal.queue-capacity", Integer.class, 100000));
+        this.batchSize = env.getProperty("journal.batch-size", Integer.class, 500);
+        this.writer = new Thread(this::writeBehind, "transfer-journal");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Create the journal table, mark the transfers left in flight by the previous run as unknown,
+     * then start writing.
+     */
+    @PostConstruct
+    public void start() {
+        jdbcTemplate.execute(CREATE_TABLE);
+        if (jdbcTemplate.queryForObject(PRIMARY_KEY_COLUMNS, Integer.class) == 1) {
+            transactionTemplate.execute(status -> {
+                for (String statement : MIGRATE_PRIMARY_KEY) {
+                    jdbcTemplate.execute(statement);
+                }
+                return null;
+            });
+            log.info("Transfer journal rows are now keyed by partner ID and transfer reference.");
+        }
+        int recovered = jdbcTemplate.update(RECOVER, UNKNOWN, now(), PENDING);
+        if (recovered > 0) {
+            log.warn("{} payment transfers were in flight at the last shutdown, marked as {}.", recovered, UNKNOWN);
+        }
+        writer.start();
+    }
+
+    /**
+     * Stop accepting entries and write the ones still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Override
+    public void started(String transferReference, MastercardSendPaymentTransfer paymentTransfer) {
+        enqueue(new Entry(paymentTransfer.getPartnerId(), transferReference, String.valueOf(paymentTransfer.getAmount()),
+                paymentTransfer.getCurrency(), PENDING, null, null));
+    }
+
+    @Override
+    public void completed(String partnerId, String transferReference, TransferOutcome outcome) {
+        if (outcome.isSuccess()) {
+            enqueue(new Entry(partnerId, transferReference, null, null, SUCCESS,
+                    (String) outcome.getResponse().get("payment_transfer.id"), null));
+        } else {
+            enqueue(new Entry(partnerId, transferReference, null, null, FAILED, null, outcome.getError().getReasonCode()));
+        }
+    }
+
+    /**
+     * Entries are written behind, so a transfer completed in the last moments may not be found yet.
+     */
+    @Override
+    public String findTransferId(String partnerId, String transferReference) {
+        List<String> ids = jdbcTemplate.queryForList(FIND_ID, String.class, partnerKey(partnerId), transferReference);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private void enqueue(Entry entry) {
+        try {
+            queue.put(entry); // only blocks when the writer is far behind
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted, transfer {} of partner {} not journaled as {}.", entry.transferReference, entry.partnerId, entry.status);
+        }
+    }
+
+    private void writeBehind() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Could not write {} transfer journal entries: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a batch in a single transaction. Entries are collapsed to one statement per transfer holding its last
+     * state, so the order of the statements does not matter: a transfer started and completed within the batch
+     * is inserted once with its final status, and a transfer completed then sent again by a retry stays pending.
+     * @param batch Entries in the order they were queued
+     */
+    private void write(List<Entry> batch) {
+        Map<String, Entry> inserts = new LinkedHashMap<>();
+        Map<String, Entry> updates = new LinkedHashMap<>();
+        for (Entry entry : batch) {
+            String key = entry.partnerId + ':' + entry.transferReference;
+            Entry started = inserts.get(key);
+            if (PENDING.equals(entry.status)) {
+                updates.remove(key); // superseded by the new attempt
+                inserts.put(key, entry);
+            } else if (started != null) {
+                inserts.put(key, started.complete(entry));
+            } else {
+                updates.put(key, entry);
+            }
+        }
+        Timestamp now = now();
+        List<Object[]> insertArgs = new ArrayList<>(inserts.size());
+        for (Entry entry : inserts.values()) {
+            insertArgs.add(new Object[]{entry.partnerId, entry.transferReference, entry.amount, entry.currency,
+                    entry.status, entry.upstreamId, entry.reasonCode, now});
+        }
+        List<Object[]> updateArgs = new ArrayList<>(updates.size());
+        for (Entry entry : updates.values()) {
+            updateArgs.add(new Object[]{entry.status, entry.upstreamId, entry.reasonCode, now, entry.partnerId, entry.transferReference});
+        }
+        transactionTemplate.execute(status -> {
+            if (!insertArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT, insertArgs);
+            }
+            if (!updateArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE, updateArgs);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return The partner ID as stored, transfers sent without one are journaled with an empty ID
+     */
+    private static String partnerKey(String partnerId) {
+        return partnerId == null ? "" : partnerId;
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    private static final class Entry {
+        private final String partnerId;
+        private final String transferReference;
+        private final String amount;
+        private final String currency;
+        private final String status;
+        private final String upstreamId;
+        private final String reasonCode;
+
+        private Entry(String partnerId, String transferReference, String amount, String currency,
+                      String status, String upstreamId, String reasonCode) {
+            this.partnerId = partnerKey(partnerId);
+            this.transferReference = transferReference;
+            this.amount = amount;
+            this.currency = currency;
+            this.status = status;
+            this.upstreamId = upstreamId;
+            this.reasonCode = reasonCode;
+        }
+
+        /**
+         * @return This started entry with the outcome of the completed one
+         */
+        private Entry complete(Entry completed) {
+            return new Entry(partnerId, transferReference, amount, currency,
+                    completed.status, completed.upstreamId, completed.reasonCode);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package mastercardsend.api.p2p.journal;
+
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.TransferOutcome;
+
+/**
+ * Persistent record of every payment transfer pushed to the Mastercard Send API.
+ */
+public interface TransferJournal {
+    /** The transfer was sent and no outcome was received yet. **/
+    String PENDING = "PENDING";
+    /** The transfer was created by the API. **/
+    String SUCCESS = "SUCCESS";
+    /** The API rejected the transfer or the call failed. **/
+    String FAILED = "FAILED";
+    /** The application stopped while the transfer was in flight, its outcome must be checked upstream. **/
+    String UNKNOWN = "UNKNOWN";
+
+    /** Journal recording nothing. **/
+    TransferJournal NONE = new TransferJournal() {
+        @Override
+        public void started(String transferReference, MastercardSendPaymentTransfer paymentTransfer) {
+        }
+
+        @Override
+        public void completed(String partnerId, String transferReference, TransferOutcome outcome) {
+        }
+
+        @Override
+        public String findTransferId(String partnerId, String transferReference) {
+            return null;
+        }
+    };
+
+    /**
+     * Record a transfer about to be sent. Transfers are identified by their partner and reference,
+     * as partners choose their references independently.
+     * @param transferReference Reference sent with the transfer
+     * @param paymentTransfer PaymentTransfer model containing the transfer details
+     */
+    void started(String transferReference, MastercardSendPaymentTransfer paymentTransfer);
+
+    /**
+     * Record the outcome of a transfer.
+     * @param partnerId Partner the transfer was sent for
+     * @param transferReference Reference sent with the transfer
+     * @param outcome Outcome of the API call
+     */
+    void completed(String partnerId, String transferReference, TransferOutcome outcome);
+
+    /**
+     * Look up the ID the API assigned to a transfer.
+     * @param partnerId Partner the transfer was sent for
+     * @param transferReference Reference sent with the transfer
+     * @return The transfer ID, null if the partner has no such transfer or it was not created
+     */
+    String findTransferId(String partnerId, String transferReference);
+}
@@ -0,0 +1,48 @@
+package mastercardsend.api.p2p.logging;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Masks the account URIs found in rendered log output: the identifier keeps its last four characters,
+ * e.g. pan:************0187, and CVCs are replaced entirely.
+ */
+public final class Masking {
+    // Schemes of mastercardsend.api.p2p.model.AccountUri.Scheme, not preceded by a word character so that e.g. user_id: is left alone
+    private static final Pattern ACCOUNT_URI = Pattern.compile(
+            "(?<![\\w-])(pan|raw|id|acct-ref|consumer-ref|acct-token|non-card-token|iban|fps-acct):([^;\"'\\s,}]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CVC = Pattern.compile("(;cvc=)[^;\"'\\s,}]*", Pattern.CASE_INSENSITIVE);
+    private static final int VISIBLE = 4;
+
+    private Masking() {
+    }
+
+    /**
+     * @param text Rendered message or values
+     * @return The text with account identifiers and CVCs masked, the same instance if there is nothing to mask
+     */
+    public static String mask(String text) {
+        if (text == null || text.indexOf(':') < 0) {
+            return text;
+        }
+        Matcher uri = ACCOUNT_URI.matcher(text);
+        if (!uri.find()) {
+            return text;
+        }
+        StringBuilder masked = new StringBuilder(text.length());
+        int last = 0;
+        do {
+            String identifier = uri.group(2);
+            masked.append(text, last, uri.start(2));
+            // identifiers too short to keep any of them visible are masked entirely
+            int visibleFrom = identifier.length() > 2 * VISIBLE ? identifier.length() - VISIBLE : identifier.length();
+            for (int i = 0; i < identifier.length(); i++) {
+                masked.append(i < visibleFrom ? '*' : identifier.charAt(i));
+            }
+            last = uri.end(2);
+        } while (uri.find());
+        masked.append(text, last, text.length());
+        return CVC.matcher(masked).replaceAll("$1***");
+    }
+}
@@ -0,0 +1,17 @@
+package mastercardsend.api.p2p.logging;
+
+import ch.qos.logback.classic.pattern.KeyValuePairConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * %maskedKvp: the key-value pairs of the event with account URIs masked, see {@link Masking}.
+ * Values are only converted to strings here, so payloads attached to an event are rendered by the appender
+ * and not by the thread that logged it.
+ */
+public class MaskingKeyValuePairConverter extends KeyValuePairConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return Masking.mask(super.convert(event));
+    }
+}
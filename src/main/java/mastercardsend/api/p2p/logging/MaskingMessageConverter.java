@@ -0,0 +1,15 @@
+package mastercardsend.api.p2p.logging;
+
+import ch.qos.logback.classic.pattern.MessageConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * %maskedMsg: the formatted message with account URIs masked, see {@link Masking}.
+ */
+public class MaskingMessageConverter extends MessageConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return Masking.mask(super.convert(event));
+    }
+}
@@ -0,0 +1,330 @@
+package mastercardsend.api.p2p.model;
+
+import mastercardsend.api.p2p.service.MastercardService;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Account URI of a sender or recipient, scheme:identifier followed by ;exp=YYYY-MM and ;cvc=NNN for cards.
+ * Parsing keeps the original string as the formatted form, and building formats it once, so neither allocates
+ * more than the identifier and parameters. {@link #validate()} runs the checks that need no network:
+ * Luhn and expiry for PANs, mod-97 for IBANs, and a non-empty identifier for every scheme.
+ */
+public final class AccountUri {
+    private static final int MIN_PAN_LENGTH = 12;
+    private static final int MAX_PAN_LENGTH = 19;
+    private static final int MIN_IBAN_LENGTH = 15;
+    private static final int MAX_IBAN_LENGTH = 34;
+
+    private final Scheme scheme;
+    private final String identifier;
+    private final String expYear;
+    private final String expMonth;
+    private final String cvc;
+    private final String uri;
+
+    private AccountUri(Scheme scheme, String identifier, String expYear, String expMonth, String cvc, String uri) {
+        this.scheme = scheme;
+        this.identifier = identifier;
+        this.expYear = expYear;
+        this.expMonth = expMonth;
+        this.cvc = cvc;
+        this.uri = uri != null ? uri : format();
+    }
+
+    /**
+     * @param scheme Account URI scheme
+     * @param identifier Account identifier, IBANs are upper-cased and stripped of spaces
+     * @return The account URI
+     */
+    public static AccountUri of(Scheme scheme, String identifier) {
+        return of(scheme, identifier, null, null, null);
+    }
+
+    /**
+     * @param scheme Account URI scheme
+     * @param identifier Account identifier, IBANs are upper-cased and stripped of spaces
+     * @param expYear Four digit expiry year, null for none
+     * @param expMonth Two digit expiry month, null for none
+     * @param cvc Card verification code, null for none
+     * @return The account URI
+     */
+    public static AccountUri of(Scheme scheme, String identifier, String expYear, String expMonth, String cvc) {
+        if (scheme == Scheme.IBAN && identifier != null) {
+            identifier = identifier.replace(" ", "").toUpperCase();
+        }
+        return new AccountUri(scheme, identifier, expYear, expMonth, cvc, null);
+    }
+
+    /**
+     * Parse an account URI. Parameters other than exp and cvc are kept in the formatted form but not validated.
+     * @param uri Account URI as sent to the API
+     * @return The account URI
+     * @throws IllegalArgumentException if the URI has no scheme or an unknown one
+     */
+    public static AccountUri parse(String uri) {
+        int colon = uri.indexOf(':');
+        Scheme scheme = colon < 0 ? null : Scheme.fromValue(uri.substring(0, colon));
+        if (scheme == null) {
+            throw new IllegalArgumentException("unknown URI scheme");
+        }
+        int end = uri.indexOf(';', colon + 1);
+        String identifier = uri.substring(colon + 1, end < 0 ? uri.length() : end);
+        String expYear = null;
+        String expMonth = null;
+        String cvc = null;
+        while (end >= 0) {
+            int start = end + 1;
+            end = uri.indexOf(';', start);
+            int parameterEnd = end < 0 ? uri.length() : end;
+            if (uri.startsWith("exp=", start)) {
+                int dash = uri.indexOf('-', start);
+                if (dash < 0 || dash > parameterEnd) {
+                    throw new IllegalArgumentException("expiry is not YYYY-MM");
+                }
+                expYear = uri.substring(start + 4, dash);
+                expMonth = uri.substring(dash + 1, parameterEnd);
+            } else if (uri.startsWith("cvc=", start)) {
+                cvc = uri.substring(start + 4, parameterEnd);
+            }
+        }
+        return new AccountUri(scheme, identifier, expYear, expMonth, cvc, uri);
+    }
+
+    /**
+     * Check the account URI against the current month.
+     * @return Why the URI is invalid, null if it is valid
+     */
+    public String validate() {
+        return validate(YearMonth.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Check the account URI.
+     * @param currentMonth Month against which expiry is checked, cards are valid until the end of their expiry month
+     * @return Why the URI is invalid, null if it is valid
+     */
+    public String validate(YearMonth currentMonth) {
+        if (identifier == null || identifier.isEmpty()) {
+            return "identifier is missing";
+        }
+        if (expYear != null || expMonth != null) {
+            int year = digits(expYear, 4, 4);
+            int month = digits(expMonth, 2, 2);
+            if (year < 0 || month < 1 || month > 12) {
+                return "expiry is not YYYY-MM";
+            }
+            if (year < currentMonth.getYear() || (year == currentMonth.getYear() && month < currentMonth.getMonthValue())) {
+                return "card has expired";
+            }
+        }
+        if (cvc != null && digits(cvc, 3, 4) < 0) {
+            return "CVC is not 3 or 4 digits";
+        }
+        switch (scheme) {
+            case PAN:
+                if (!isDigits(identifier, MIN_PAN_LENGTH, MAX_PAN_LENGTH)) {
+                    return "PAN is not " + MIN_PAN_LENGTH + " to " + MAX_PAN_LENGTH + " digits";
+                }
+                return isLuhnValid(identifier) ? null : "PAN fails the Luhn check";
+            case IBAN:
+                return isIbanValid(identifier) ? null : "IBAN fails the mod-97 check";
+            default:
+                return identifier.indexOf(' ') < 0 ? null : "identifier contains spaces";
+        }
+    }
+
+    /**
+     * @return True if the last digit is the Luhn check digit of the others
+     */
+    static boolean isLuhnValid(String digits) {
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+
+    /**
+     * @return True if the IBAN has a country code, check digits, and the remainder of the rearranged number by 97 is 1
+     */
+    static boolean isIbanValid(String iban) {
+        int length = iban.length();
+        if (length < MIN_IBAN_LENGTH || length > MAX_IBAN_LENGTH
+                || !isUpperLetter(iban.charAt(0)) || !isUpperLetter(iban.charAt(1))
+                || !isDigit(iban.charAt(2)) || !isDigit(iban.charAt(3))) {
+            return false;
+        }
+        int remainder = 0;
+        for (int i = 0; i < length; i++) {
+            char c = iban.charAt((i + 4) % length); // country code and check digits moved to the end
+            if (isDigit(c)) {
+                remainder = (remainder * 10 + (c - '0')) % 97;
+            } else if (isUpperLetter(c)) {
+                remainder = (remainder * 100 + (c - 'A' + 10)) % 97;
+            } else {
+                return false;
+            }
+        }
+        return remainder == 1;
+    }
+
+    /**
+     * @return The value of a string of minLength to maxLength digits, at most 9, -1 if it is not one
+     */
+    private static int digits(String value, int minLength, int maxLength) {
+        if (value == null || value.length() < minLength || value.length() > maxLength) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigits(String value, int minLength, int maxLength) {
+        if (value.length() < minLength || value.length() > maxLength) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpperLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private String format() {
+        StringBuilder formatted = new StringBuilder(scheme.value.length() + 48)
+                .append(scheme.value).append(':').append(identifier);
+        if (expYear != null && expMonth != null) {
+            formatted.append(";exp=").append(expYear).append('-').append(expMonth);
+        }
+        if (cvc != null) {
+            formatted.append(";cvc=").append(cvc);
+        }
+        return formatted.toString();
+    }
+
+    public Scheme getScheme() {
+        return scheme;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getExpYear() {
+        return expYear;
+    }
+
+    public String getExpMonth() {
+        return expMonth;
+    }
+
+    public String getCvc() {
+        return cvc;
+    }
+
+    /**
+     * @return The account URI as sent to the API
+     */
+    @Override
+    public String toString() {
+        return uri;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AccountUri && uri.equals(((AccountUri) o).uri);
+    }
+
+    @Override
+    public int hashCode() {
+        return uri.hashCode();
+    }
+
+    /**
+     * Account URI schemes, with the value sent to the API and the label displayed on the form.
+     */
+    public enum Scheme {
+        PAN(MastercardService.PAN, "PAN"),
+        ACCOUNT_NUMBER(MastercardService.ACCOUNT_NUMBER, "Account Number"),
+        ACCOUNT_ID(MastercardService.ACCOUNT_ID, "Account ID"),
+        ACCOUNT_REFERENCE(MastercardService.ACCOUNT_REFERENCE, "Account Reference"),
+        CONSUMER_REFERENCE(MastercardService.CONSUMER_REFERENCE, "Consumer Reference"),
+        ACCOUNT_TOKEN(MastercardService.ACCOUNT_TOKEN, "Account Token"),
+        NON_CARD_TOKEN(MastercardService.NON_CARD_TOKEN, "Non-Card Token"),
+        IBAN(MastercardService.IBAN, "IBAN"),
+        FASTER_PAYMENTS_SERVICE(MastercardService.FASTER_PAYMENTS_SERVICE, "Faster Payments Service");
+
+        // Case-insensitive lookups that do not allocate a lower-cased copy of the input
+        private static final Map<String, Scheme> BY_VALUE = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private static final Map<String, Scheme> BY_VALUE_OR_LABEL = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        static {
+            for (Scheme scheme : values()) {
+                BY_VALUE.put(scheme.value, scheme);
+                BY_VALUE_OR_LABEL.put(scheme.value, scheme);
+                BY_VALUE_OR_LABEL.put(scheme.label, scheme);
+            }
+        }
+
+        private final String value;
+        private final String label;
+
+        Scheme(String value, String label) {
+            this.value = value;
+            this.label = label;
+        }
+
+        /**
+         * @param value The scheme as sent to the API, in any case
+         * @return The scheme, null if unknown
+         */
+        public static Scheme fromValue(String value) {
+            return value == null ? null : BY_VALUE.get(value);
+        }
+
+        /**
+         * @param label The scheme as displayed on the form or as sent to the API, in any case
+         * @return The scheme, null if unknown
+         */
+        public static Scheme fromLabel(String label) {
+            return label == null ? null : BY_VALUE_OR_LABEL.get(label);
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+}
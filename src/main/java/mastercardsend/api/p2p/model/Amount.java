@@ -0,0 +1,141 @@
+package mastercardsend.api.p2p.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Immutable amount in the minor units of its currency, e.g. 4400 for 44.00 USD, which is also the Mastercard Send
+ * wire format. Parsing and formatting work on the digits directly, so the hot path does no BigDecimal arithmetic.
+ * The currency is kept alongside, see {@link CurrencyTable} for the minor-unit exponents.
+ */
+public final class Amount implements Comparable<Amount> {
+    public static final Amount ZERO = new Amount(0);
+
+    private final long minorUnits;
+
+    private Amount(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * @param minorUnits Amount in minor units
+     * @return The amount
+     */
+    public static Amount ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Amount(minorUnits);
+    }
+
+    /**
+     * Parse the wire format, also used to bind the form field.
+     * @param minorUnits Integer number of minor units, optionally signed
+     * @return The amount
+     * @throws IllegalArgumentException if the value is not an integer or does not fit a long
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Amount valueOf(String minorUnits) {
+        String value = minorUnits == null ? "" : minorUnits.trim();
+        int start = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+        if (value.length() == start) {
+            throw new IllegalArgumentException("Amount is empty.");
+        }
+        long result = 0;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Amount " + value + " is not a whole number of minor units.");
+            }
+            try {
+                result = Math.addExact(Math.multiplyExact(result, 10), c - '0');
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Amount " + value + " is too large.");
+            }
+        }
+        return ofMinorUnits(value.charAt(0) == '-' ? -result : result);
+    }
+
+    /**
+     * @param minorUnits Amount in minor units, as a JSON number
+     * @return The amount
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Amount valueOf(long minorUnits) {
+        return ofMinorUnits(minorUnits);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    /**
+     * @param other Amount in the same currency
+     * @return The sum
+     * @throws ArithmeticException on overflow
+     */
+    public Amount plus(Amount other) {
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Amounts of the same order of magnitude share a band, e.g. 10 to 99 minor units is band 2.
+     * @return Number of digits of the amount in minor units, 0 for zero, negative for negative amounts
+     */
+    public int band() {
+        long abs = Math.abs(minorUnits);
+        int digits = 0;
+        while (abs > 0) {
+            abs /= 10;
+            digits++;
+        }
+        return minorUnits < 0 ? -digits : digits;
+    }
+
+    /**
+     * Format the amount in major units, e.g. 44.00 for 4400 with an exponent of 2.
+     * @param exponent Minor-unit exponent of the currency
+     * @return The amount with the decimal point placed by the exponent
+     */
+    public String toMajorUnits(int exponent) {
+        String digits = Long.toString(Math.abs(minorUnits));
+        if (exponent <= 0) {
+            return toString();
+        }
+        StringBuilder formatted = new StringBuilder(digits.length() + exponent + 2);
+        if (minorUnits < 0) {
+            formatted.append('-');
+        }
+        for (int i = digits.length(); i <= exponent; i++) {
+            formatted.append('0');
+        }
+        formatted.append(digits);
+        formatted.insert(formatted.length() - exponent, '.');
+        return formatted.toString();
+    }
+
+    @Override
+    public int compareTo(Amount other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Amount && ((Amount) o).minorUnits == minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    /**
+     * @return The wire format, the integer number of minor units
+     */
+    @JsonValue
+    @Override
+    public String toString() {
+        return Long.toString(minorUnits);
+    }
+}
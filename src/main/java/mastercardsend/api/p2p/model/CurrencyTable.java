@@ -0,0 +1,89 @@
+package mastercardsend.api.p2p.model;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Locale;
+
+/**
+ * ISO 4217 currencies accepted for transfers, with their minor-unit exponents.
+ * The exponents are precomputed into an array indexed by the three letters of the alphabetic code, so looking
+ * a currency up is arithmetic on its characters, without hashing or allocating.
+ */
+public final class CurrencyTable {
+    private static final int SIZE = 26 * 26 * 26;
+    // Minor-unit exponent by code index, -1 for codes that are not ISO 4217 currencies
+    private static final byte[] EXPONENTS = new byte[SIZE];
+
+    static {
+        Arrays.fill(EXPONENTS, (byte) -1);
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int index = index(currency.getCurrencyCode());
+            int exponent = currency.getDefaultFractionDigits();
+            if (index >= 0 && exponent >= 0) { // pseudo-currencies such as XAU have no minor unit
+                EXPONENTS[index] = (byte) exponent;
+            }
+        }
+    }
+
+    // Currencies allowed by the configuration, by code index
+    private final boolean[] allowed = new boolean[SIZE];
+
+    /**
+     * @param allowedCurrencies Comma-separated alphabetic codes, empty or blank to allow every ISO 4217 currency
+     * @throws IllegalArgumentException if a code is not an ISO 4217 currency
+     */
+    public CurrencyTable(String allowedCurrencies) {
+        if (allowedCurrencies.isBlank()) {
+            for (int i = 0; i < SIZE; i++) {
+                allowed[i] = EXPONENTS[i] >= 0;
+            }
+            return;
+        }
+        for (String code : allowedCurrencies.split(",")) {
+            if (code.isBlank()) {
+                continue;
+            }
+            int index = index(code.trim().toUpperCase(Locale.ROOT));
+            if (index < 0 || EXPONENTS[index] < 0) { // a typo must not allow every currency
+                throw new IllegalArgumentException("Allowed currency '" + code.trim() + "' is not an ISO 4217 currency.");
+            }
+            allowed[index] = true;
+        }
+    }
+
+    /**
+     * @param code Three letter alphabetic code, upper case
+     * @return The number of minor-unit digits of the currency, -1 if it is not an ISO 4217 currency
+     */
+    public static int exponent(String code) {
+        int index = index(code);
+        return index < 0 ? -1 : EXPONENTS[index];
+    }
+
+    /**
+     * @param code Three letter alphabetic code, upper case
+     * @return True if transfers may be made in this currency
+     */
+    public boolean isAllowed(String code) {
+        int index = index(code);
+        return index >= 0 && allowed[index];
+    }
+
+    /**
+     * @return The index of a three upper-case letter code, -1 for anything else
+     */
+    static int index(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            index = index * 26 + (c - 'A');
+        }
+        return index;
+    }
+}
@@ -1,21 +1,28 @@
 package mastercardsend.api.p2p.model;
 
-import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import mastercardsend.api.p2p.service.MastercardService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * Request Spring model that contains required information for making Payment Transfer API calls.
  */
-@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class MastercardSendPaymentTransfer {
+    private static final Logger log = LoggerFactory.getLogger(MastercardSendPaymentTransfer.class);
+    // Options of the form, rendered on every page load
+    private static final List<String> RECIPIENT_URI_SCHEMES = List.of("PAN", "Account Token", "IBAN", "Faster Payments Service");
+    private static final List<String> FUNDING_SOURCES = List.of("Credit", "Debit", "Prepaid", "Deposit Account",
+            "Mobile Money Account", "Cash");
+
     private String partnerId;
     private String transferReference;
     private String paymentType = MastercardService.PERSON_TO_PERSON; // as defined during the onboarding process
-    private String amount;
+    private Amount amount;
     private String currency;
     private String senderUriScheme = "PAN"; // There are multiple possible values as listed in the PaymentTransfer API documentation. For the purposes of this reference application, we will only use PAN.
     private String senderUriIdentifier;
@@ -64,11 +71,11 @@ public class MastercardSendPaymentTransfer {
         return paymentType;
     }
 
-    public String getAmount() {
+    public Amount getAmount() {
         return amount;
     }
 
-    public void setAmount(String amount) {
+    public void setAmount(Amount amount) {
         this.amount = amount;
     }
 
@@ -125,16 +132,12 @@ public class MastercardSendPaymentTransfer {
     }
 
     /**
-     * Sets the recipient account URI in the correct format for the API call.
+     * Sets the sender account URI in the correct format for the API call.
      */
     public void setSenderAccountUri() {
-        String scheme = getFormattedUriScheme(senderUriScheme);
+        AccountUri.Scheme scheme = getUriScheme(senderUriScheme);
         if (scheme == null) return;
-        senderAccountUri = scheme + ":" + senderUriIdentifier + ";exp=" + senderUriExpYear + "-" + senderUriExpMonth;
-        // add CVC info if given
-        if (senderUriCvc != null) {
-            senderAccountUri = senderAccountUri + ";cvc=" + senderUriCvc;
-        }
+        senderAccountUri = AccountUri.of(scheme, senderUriIdentifier, senderUriExpYear, senderUriExpMonth, senderUriCvc).toString();
     }
 
     public String getSenderFirstName() {
@@ -253,18 +256,14 @@ public class MastercardSendPaymentTransfer {
      * Sets the recipient account URI in the correct format for the API call.
      */
     public void setRecipientAccountUri() {
-        String scheme = getFormattedUriScheme(recipientUriScheme);
+        AccountUri.Scheme scheme = getUriScheme(recipientUriScheme);
         if (scheme == null) {
-            System.err.println("Recipient account URI could not be set because of invalid URI scheme.");
+            log.warn("Recipient account URI could not be set because of invalid URI scheme.");
             return;
-        } else if (scheme.equals(MastercardService.PAN)) {
-            recipientAccountUri = scheme + ":" + recipientUriIdentifier + ";exp=" + recipientUriExpYear + "-" + recipientUriExpMonth;
-            // add CVC info if given
-            if (recipientUriCvc != null) {
-                recipientAccountUri = recipientAccountUri + ";cvc=" + recipientUriCvc;
-            }
+        } else if (scheme == AccountUri.Scheme.PAN) {
+            recipientAccountUri = AccountUri.of(scheme, recipientUriIdentifier, recipientUriExpYear, recipientUriExpMonth, recipientUriCvc).toString();
         } else {
-            recipientAccountUri = scheme + ":" + recipientUriIdentifier;
+            recipientAccountUri = AccountUri.of(scheme, recipientUriIdentifier).toString();
         }
     }
 
@@ -317,25 +316,16 @@ public class MastercardSendPaymentTransfer {
     }
 
     /**
-     * Returns the correct corresponding value of the URI scheme for making the PaymentTransfer API call.
+     * Returns the URI scheme for making the PaymentTransfer API call.
      * @param scheme the URI scheme as displayed on the form
-     * @return The corresponding value to include in the request
+     * @return The corresponding scheme, null if invalid
      */
-    private String getFormattedUriScheme(String scheme) {
-        switch (scheme.toLowerCase()) {
-            case "pan":
-                return MastercardService.PAN;
-            case "account token":
-                return MastercardService.ACCOUNT_TOKEN;
-            case "iban":
-                return MastercardService.IBAN;
-            case "faster payments service":
-                return MastercardService.FASTER_PAYMENTS_SERVICE;
-            default:
-                break;
+    private AccountUri.Scheme getUriScheme(String scheme) {
+        AccountUri.Scheme uriScheme = AccountUri.Scheme.fromLabel(scheme);
+        if (uriScheme == null) {
+            log.warn("Invalid URI scheme {}.", scheme);
         }
-        System.err.println("Invalid URI Scheme.");
-        return null;
+        return uriScheme;
     }
 
     /**
@@ -360,36 +350,24 @@ public class MastercardSendPaymentTransfer {
             default:
                 break;
         }
-        System.err.println("Invalid funding source.");
+        log.warn("Invalid funding source {}.", source);
         return null;
     }
 
     /**
      * Get all the currently valid recipient URI schemes.
-     * @return the recipient URI schemes
+     * @return the recipient URI schemes, unmodifiable
      */
     public static List<String> getRecipientUriSchemes() {
-        List<String> recipientUriSchemes = new LinkedList<String>();
-        recipientUriSchemes.add("PAN");
-        recipientUriSchemes.add("Account Token");
-        recipientUriSchemes.add("IBAN");
-        recipientUriSchemes.add("Faster Payments Service");
-        return recipientUriSchemes;
+        return RECIPIENT_URI_SCHEMES;
     }
 
     /**
      * Get all the valid funding sources.
-     * @return the funding sources
+     * @return the funding sources, unmodifiable
      */
     public static List<String> getFundingSources() {
-        List<String> fundingSources = new LinkedList<String>();
-        fundingSources.add("Credit");
-        fundingSources.add("Debit");
-        fundingSources.add("Prepaid");
-        fundingSources.add("Deposit Account");
-        fundingSources.add("Mobile Money Account");
-        fundingSources.add("Cash");
-        return fundingSources;
+        return FUNDING_SOURCES;
     }
 
 }
@@ -0,0 +1,36 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Thrown when the {@link AdmissionScheduler} sheds a transfer: its lane queue is full, or it would wait for a slot
+ * longer than the lane deadline.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    private final AdmissionScheduler.Lane lane;
+    private final long retryAfterMillis;
+
+    /**
+     * @param lane Lane the transfer was submitted to
+     * @param message Why the transfer was shed
+     * @param retryAfterMillis How long until the lane is expected to admit the transfer
+     */
+    public AdmissionRejectedException(AdmissionScheduler.Lane lane, String message, long retryAfterMillis) {
+        super(message);
+        this.lane = lane;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public AdmissionScheduler.Lane getLane() {
+        return lane;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * @return The Retry-After header value, in whole seconds rounded up
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMillis + 999) / 1000);
+    }
+}
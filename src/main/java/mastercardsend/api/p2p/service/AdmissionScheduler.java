@@ -0,0 +1,388 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Admission of transfers in front of {@link MastercardService}, so that a burst of bulk transfers does not hold up
+ * the form. At most admission.max-concurrent transfers are in flight; beyond that they wait in the queue of their
+ * {@link Lane}, and every slot freed goes to the waiting lane furthest below its weighted share (stride scheduling).
+ * A lane never holds more than its own max-concurrent slots, so the slots bulk transfers leave free are admitted
+ * at once for the other lanes.
+ * <p>
+ * Each lane is configured with admission.{lane}.weight, .max-concurrent, .queue-depth and .deadline-millis, the longest
+ * a transfer may wait for its slot. Transfers are shed with an {@link AdmissionRejectedException} when their lane queue
+ * is full, when the recent transfer durations predict a wait beyond the deadline, or when the deadline passes while
+ * they wait. An admission.max-concurrent of 0 disables admission.
+ */
+@Component
+public class AdmissionScheduler {
+    /** Priority lanes, in the order their transfers go first at equal weights. **/
+    public enum Lane {
+        /** Transfers of the form. **/
+        INTERACTIVE,
+        /** Transfers of the JSON endpoints. **/
+        API,
+        /** Transfers of batches and of the disbursement job. **/
+        BULK
+    }
+
+    // Weight of the latest transfer duration in the moving average
+    private static final double SMOOTHING = 0.1;
+
+    private final int maxConcurrent;
+    private final LaneState[] lanes = new LaneState[Lane.values().length];
+    // Sheds waiting transfers once their deadline passes
+    private final ScheduledThreadPoolExecutor deadlines;
+    // Runs the asynchronous transfers admitted once a slot is freed
+    private final ExecutorService workers;
+
+    // Guarded by this
+    private int inFlight;
+    // Pass of the lane admitted last, lanes starting to wait again start from it
+    private double virtualTime;
+    private double averageNanos;
+
+    /**
+     * @param env Environment from which property details are obtained
+     */
+    public AdmissionScheduler(Environment env) {
+        this.maxConcurrent = env.getProperty("admission.max-concurrent", Integer.class, 0);
+        for (Lane lane : Lane.values()) {
+            lanes[lane.ordinal()] = new LaneState(lane, env, maxConcurrent);
+        }
+        this.deadlines = new ScheduledThreadPoolExecutor(1, Threads.factory("admission-deadline-", false));
+        this.deadlines.setRemoveOnCancelPolicy(true);
+        if (Threads.isVirtual(env)) {
+            this.workers = Executors.newThreadPerTaskExecutor(Threads.factory("admission-", true));
+        } else {
+            int threads = env.getProperty("admission.threads", Integer.class, 16);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), Threads.factory("admission-", false));
+            pool.allowCoreThreadTimeOut(true);
+            this.workers = pool;
+        }
+    }
+
+    /**
+     * @param env Environment from which property details are obtained
+     * @param metrics Metrics the lanes are published to
+     */
+    @Autowired
+    public AdmissionScheduler(Environment env, TransferMetrics metrics) {
+        this(env);
+        metrics.bind(this);
+    }
+
+    /**
+     * Run a transfer once admitted, without blocking: on the calling thread if a slot is free, else on a worker
+     * when its lane is given one. The slot is held until the future of the task completes.
+     * @param lane Lane of the transfer
+     * @param task Starts the transfer, e.g. {@link MastercardService#createAsync}
+     * @return Future of the task result, completed exceptionally with an {@link AdmissionRejectedException}
+     * if the transfer was shed, or with what the task threw
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Supplier<CompletableFuture<T>> task) {
+        if (maxConcurrent <= 0) {
+            return run(null, task);
+        }
+        CompletableFuture<Permit> admission = admit(lane);
+        if (admission.isDone()) { // admitted at once or rejected, no need to change threads
+            return admission.thenCompose(permit -> run(permit, task));
+        }
+        return admission.thenComposeAsync(permit -> run(permit, task), workers);
+    }
+
+    /**
+     * Wait for a slot, for callers already running on a worker thread.
+     * @param lane Lane of the transfer
+     * @return The slot, to be closed once the transfer completes; null if admission is disabled
+     * @throws AdmissionRejectedException if the transfer was shed
+     */
+    public Permit acquire(Lane lane) {
+        if (maxConcurrent <= 0) {
+            return null;
+        }
+        try {
+            return admit(lane).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Start the task and release the slot once its future completes.
+     */
+    private static <T> CompletableFuture<T> run(Permit permit, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result;
+        try {
+            result = task.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        if (permit != null) {
+            result.whenComplete((value, e) -> permit.close());
+        }
+        return result;
+    }
+
+    /**
+     * @return Future of the slot, already completed if a slot is free or the transfer is shed
+     */
+    private CompletableFuture<Permit> admit(Lane lane) {
+        LaneState state = lanes[lane.ordinal()];
+        Waiter waiter;
+        synchronized (this) {
+            // a free slot means nothing of this lane waits, as every released slot is given to a waiting transfer
+            if (inFlight < maxConcurrent && state.inFlight < state.maxConcurrent && state.queue.isEmpty()) {
+                return CompletableFuture.completedFuture(start(state));
+            }
+            if (state.queue.size() >= state.queueDepth) {
+                state.rejected.increment();
+                return CompletableFuture.failedFuture(new AdmissionRejectedException(lane,
+                        "Too many " + state.name + " transfers waiting", estimatedWaitNanos(state) / 1_000_000));
+            }
+            long waitNanos = estimatedWaitNanos(state);
+            if (waitNanos > state.deadlineNanos) { // shed now rather than once the deadline has passed
+                state.rejected.increment();
+                return CompletableFuture.failedFuture(new AdmissionRejectedException(lane,
+                        "The " + state.name + " transfers are expected to wait longer than their deadline", waitNanos / 1_000_000));
+            }
+            if (state.queue.isEmpty()) {
+                state.pass = Math.max(state.pass, virtualTime); // no credit for the time spent idle
+            }
+            waiter = new Waiter(lane, System.nanoTime() + state.deadlineNanos);
+            state.queue.add(waiter);
+        }
+        try {
+            waiter.expiry = deadlines.schedule(() -> expire(state, waiter), state.deadlineNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) { // shutting down, shed at dispatch if the deadline passes
+        }
+        return waiter.admission;
+    }
+
+    /**
+     * @return Expected wait for a slot of a transfer joining the lane queue: the transfers ahead of it, served
+     * at the lane share of the slots and the recent transfer duration; 0 until a transfer has completed
+     */
+    private long estimatedWaitNanos(LaneState state) {
+        double weights = state.weight;
+        for (LaneState other : lanes) {
+            if (other != state && !other.queue.isEmpty()) {
+                weights += other.weight;
+            }
+        }
+        double slots = Math.min(state.maxConcurrent, maxConcurrent * state.weight / weights);
+        return (long) ((state.queue.size() + 1) * averageNanos / Math.max(1.0, slots));
+    }
+
+    private void expire(LaneState state, Waiter waiter) {
+        long waitNanos;
+        synchronized (this) {
+            if (!state.queue.remove(waiter)) {
+                return; // admitted meanwhile
+            }
+            state.shed.increment();
+            waitNanos = estimatedWaitNanos(state);
+        }
+        waiter.admission.completeExceptionally(new AdmissionRejectedException(state.lane,
+                "The " + state.name + " transfer waited longer than its deadline", waitNanos / 1_000_000));
+    }
+
+    /**
+     * Take a slot for the lane. Guarded by this.
+     */
+    private Permit start(LaneState state) {
+        inFlight++;
+        state.inFlight++;
+        state.admitted.increment();
+        return new Permit(state);
+    }
+
+    /**
+     * Give back the slot of a completed transfer, and give freed slots to waiting transfers.
+     */
+    private void release(LaneState state, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        Waiter next;
+        Permit permit;
+        do {
+            next = null;
+            permit = null;
+            List<Waiter> expired = new ArrayList<>(0);
+            synchronized (this) {
+                if (state != null) {
+                    inFlight--;
+                    state.inFlight--;
+                    averageNanos = averageNanos == 0 ? durationNanos : averageNanos + SMOOTHING * (durationNanos - averageNanos);
+                    state = null;
+                }
+                while (inFlight < maxConcurrent && next == null) {
+                    LaneState lane = nextLane();
+                    if (lane == null) {
+                        break;
+                    }
+                    Waiter waiter = lane.queue.poll();
+                    if (waiter.deadlineNanos - System.nanoTime() < 0) { // expiry not run yet
+                        lane.shed.increment();
+                        expired.add(waiter);
+                        continue;
+                    }
+                    virtualTime = lane.pass;
+                    lane.pass += 1.0 / lane.weight;
+                    next = waiter;
+                    permit = start(lane);
+                }
+            }
+            // completed outside the lock, as completing runs the callbacks of the waiting transfers
+            for (Waiter waiter : expired) {
+                waiter.admission.completeExceptionally(new AdmissionRejectedException(waiter.lane,
+                        "The " + waiter.lane.name().toLowerCase(Locale.ROOT) + " transfer waited longer than its deadline", 0));
+            }
+            if (next != null) {
+                if (next.expiry != null) {
+                    next.expiry.cancel(false);
+                }
+                next.admission.complete(permit);
+            }
+        } while (next != null);
+    }
+
+    /**
+     * @return The waiting lane with the lowest pass among those below their own limit, null if none. Guarded by this.
+     */
+    private LaneState nextLane() {
+        LaneState next = null;
+        for (LaneState lane : lanes) {
+            if (!lane.queue.isEmpty() && lane.inFlight < lane.maxConcurrent && (next == null || lane.pass < next.pass)) {
+                next = lane;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return Number of transfers of the lane given a slot
+     */
+    public long getAdmitted(Lane lane) {
+        return lanes[lane.ordinal()].admitted.sum();
+    }
+
+    /**
+     * @return Number of transfers of the lane shed on arrival, with a full queue or a wait expected beyond the deadline
+     */
+    public long getRejected(Lane lane) {
+        return lanes[lane.ordinal()].rejected.sum();
+    }
+
+    /**
+     * @return Number of transfers of the lane shed once their deadline passed while waiting
+     */
+    public long getShed(Lane lane) {
+        return lanes[lane.ordinal()].shed.sum();
+    }
+
+    /**
+     * @return Number of transfers of the lane waiting for a slot
+     */
+    public synchronized int getWaiting(Lane lane) {
+        return lanes[lane.ordinal()].queue.size();
+    }
+
+    /**
+     * @return Number of transfers of the lane holding a slot
+     */
+    public synchronized int getInFlight(Lane lane) {
+        return lanes[lane.ordinal()].inFlight;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlines.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * Slot held by an admitted transfer, given back when closed.
+     */
+    public final class Permit implements AutoCloseable {
+        private final LaneState state;
+        private final long startNanos = System.nanoTime();
+        private boolean closed;
+
+        private Permit(LaneState state) {
+            this.state = state;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(state, startNanos);
+        }
+    }
+
+    private static final class Waiter {
+        private final Lane lane;
+        private final long deadlineNanos;
+        private final CompletableFuture<Permit> admission = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> expiry;
+
+        private Waiter(Lane lane, long deadlineNanos) {
+            this.lane = lane;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class LaneState {
+        private final Lane lane;
+        private final String name;
+        private final double weight;
+        private final int maxConcurrent;
+        private final int queueDepth;
+        private final long deadlineNanos;
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+
+        // Guarded by the scheduler
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private int inFlight;
+        // Grows by 1 / weight on every admission, the waiting lane with the lowest pass goes next
+        private double pass;
+
+        private LaneState(Lane lane, Environment env, int schedulerMaxConcurrent) {
+            this.lane = lane;
+            this.name = lane.name().toLowerCase(Locale.ROOT);
+            String prefix = "admission." + name + '.';
+            this.weight = Math.max(0.01, env.getProperty(prefix + "weight", Double.class, lane == Lane.INTERACTIVE ? 8.0 : lane == Lane.API ? 4.0 : 1.0));
+            this.maxConcurrent = env.getProperty(prefix + "max-concurrent", Integer.class, schedulerMaxConcurrent);
+            this.queueDepth = env.getProperty(prefix + "queue-depth", Integer.class, lane == Lane.BULK ? 5000 : 1000);
+            this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(env.getProperty(prefix + "deadline-millis", Long.class,
+                    lane == Lane.INTERACTIVE ? 2000L : lane == Lane.API ? 5000L : 60000L));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package mastercardsend.api.p2p.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service fanning out a stream of payment transfers to the Mastercard Send API with bounded concurrency.
+ * With virtual threads enabled each transfer runs on its own virtual thread and bulk.threads is not used.
+ */
+@Service
+public class BulkTransferService {
+    private static final Logger log = LoggerFactory.getLogger(BulkTransferService.class);
+
+    public static final String SUCCESS = "SUCCESS";
+    public static final String INELIGIBLE = "INELIGIBLE";
+    public static final String FAILED = "FAILED";
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final MastercardService service;
+    private final AdmissionScheduler admission;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    // Maximum number of transfers of one batch in flight at the same time
+    private final int concurrency;
+    private final ExecutorService executor;
+
+    /**
+     * Create the worker pool shared by all batches.
+     * @param service Service making the eligibility and payment transfer calls
+     * @param admission Scheduler admitting the transfers in the bulk lane
+     * @param mapper Jackson mapper used for reading records and writing results
+     * @param env Environment from which property details are obtained
+     */
+    @Autowired
+    public BulkTransferService(MastercardService service, AdmissionScheduler admission, ObjectMapper mapper, Environment env) {
+        this.service = service;
+        this.admission = admission;
+        this.reader = mapper.readerFor(MastercardSendPaymentTransfer.class);
+        this.writer = mapper.writer();
+        this.concurrency = env.getProperty("bulk.concurrency", Integer.class, 16);
+        this.executor = Threads.isVirtual(env)
+                ? Executors.newThreadPerTaskExecutor(Threads.factory("bulk-", true))
+                : Executors.newFixedThreadPool(env.getProperty("bulk.threads", Integer.class, concurrency), Threads.factory("bulk-", false));
+    }
+
+    /**
+     * Read payment transfers one at a time from the input and push each of them.
+     * The input is either newline delimited JSON or a JSON array of records.
+     * One result line is written to the output as soon as each transfer completes, so results
+     * are in completion order and carry the zero-based index of the record they belong to.
+     * Reading blocks while the concurrency limit is reached, so the batch is never held in memory.
+     * @param in Stream of MastercardSendPaymentTransfer records
+     * @param out Stream receiving one JSON result per line
+     * @param partnerId Partner ID every record is sent for, replacing the partner_id of the records
+     * @throws IOException if the output can not be written
+     */
+    public void transfer(InputStream in, OutputStream out, String partnerId) throws IOException {
+        Semaphore permits = new Semaphore(concurrency);
+        Lock outLock = new ReentrantLock();
+        long index = 0;
+        try (MappingIterator<MastercardSendPaymentTransfer> records = reader.readValues(in)) {
+            while (records.hasNextValue()) {
+                MastercardSendPaymentTransfer paymentTransfer = records.nextValue();
+                paymentTransfer.setPartnerId(partnerId);
+                permits.acquireUninterruptibly();
+                long current = index++;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            writeResult(out, outLock, push(current, paymentTransfer));
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) { // shutting down, the task never runs to release its permit
+                    permits.release();
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("index", current);
+                    result.put("status", FAILED);
+                    result.put("error", "Could not schedule payment transfer: " + e.getMessage());
+                    writeResult(out, outLock, result);
+                }
+            }
+        } catch (RuntimeException | IOException e) { // malformed record, stop reading
+            permits.acquireUninterruptibly(concurrency);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", index);
+            result.put("status", FAILED);
+            result.put("error", "Could not read payment transfer: " + e.getMessage());
+            writeResult(out, outLock, result);
+            return;
+        }
+        // wait for the remaining transfers before completing the response
+        permits.acquireUninterruptibly(concurrency);
+    }
+
+    /**
+     * Check the recipient eligibility and push a single payment transfer, once admitted in the bulk lane.
+     * @param index Position of the record in the batch
+     * @param paymentTransfer PaymentTransfer model containing the transfer details
+     * @return Result to be written for this record
+     */
+    private Map<String, Object> push(long index, MastercardSendPaymentTransfer paymentTransfer) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        try (AdmissionScheduler.Permit permit = admission.acquire(AdmissionScheduler.Lane.BULK)) {
+            Eligibility eligibility = service.checkEligibility(paymentTransfer);
+            if (!eligibility.isEligible()) {
+                result.put("status", eligibility.isCacheable() ? INELIGIBLE : FAILED);
+                result.put("error", eligibility.getError());
+                return result;
+            }
+            TransferOutcome outcome = service.create(paymentTransfer);
+            if (outcome.isSuccess()) {
+                result.put("status", SUCCESS);
+                result.put("response", outcome.getResponse());
+            } else {
+                result.put("status", FAILED);
+                result.put("error", outcome.getError());
+            }
+        } catch (RuntimeException e) {
+            result.put("status", FAILED);
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Write one result line and flush it so the client sees it immediately.
+     * @param out Stream receiving the results
+     * @param outLock Lock serializing the writes of the batch; a lock rather than synchronized so that
+     * a virtual thread blocked on the response stream does not pin its carrier thread
+     * @param result Result of a single transfer
+     */
+    private void writeResult(OutputStream out, Lock outLock, Map<String, Object> result) {
+        try {
+            byte[] line = writer.writeValueAsBytes(result);
+            outLock.lock();
+            try {
+                out.write(line);
+                out.write(NEWLINE);
+                out.flush();
+            } finally {
+                outLock.unlock();
+            }
+        } catch (IOException e) {
+            log.warn("Could not write bulk transfer result {}: {}", result.get("index"), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,171 @@
+package mastercardsend.api.p2p.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker in front of the Mastercard Send API.
+ * While closed, the outcomes of the last calls are kept in a fixed window; when the share of failures
+ * (no response or 5xx, errors caused by the request itself do not count) reaches the threshold the breaker opens,
+ * and calls fail immediately with a local 503 instead of waiting out the API timeout. After the open period
+ * a few probe calls are let through: the breaker closes if they all succeed and opens again if one fails.
+ * <p>
+ * Configured with the circuitbreaker.* properties. A failure rate threshold of 0 disables the breaker.
+ */
+public class CircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public static final String REASON_CODE = "CIRCUIT_OPEN";
+
+    private final String name;
+    // Percentage of failed calls in the window that opens the breaker
+    private final int failureRateThreshold;
+    // Calls recorded before the failure rate is evaluated
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    // Outcomes of the last calls while closed, true for failures
+    private final boolean[] window;
+    private final LongAdder rejected = new LongAdder();
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    // Incremented on every transition, so that calls started in a previous state are not recorded in the next one
+    private long generation;
+    private int position;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param name Name used in the error message
+     * @param env Environment from which property details are obtained
+     */
+    public CircuitBreaker(String name, Environment env) {
+        this.name = name;
+        this.failureRateThreshold = env.getProperty("circuitbreaker.failure-rate-threshold", Integer.class, 50);
+        this.window = new boolean[Math.max(1, env.getProperty("circuitbreaker.window-size", Integer.class, 50))];
+        this.minimumCalls = Math.min(window.length, env.getProperty("circuitbreaker.minimum-calls", Integer.class, 20));
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(env.getProperty("circuitbreaker.open-millis", Long.class, 5000L));
+        this.halfOpenProbes = Math.max(1, env.getProperty("circuitbreaker.half-open-probes", Integer.class, 3));
+    }
+
+    /**
+     * Make the call unless the breaker is open, and record its outcome.
+     * @param call API call
+     * @return The response of the call
+     * @throws SendApiException if the call failed, or with status 503 and reason code CIRCUIT_OPEN if it was not made
+     */
+    public <T> T call(SendApiCall<T> call) throws SendApiException {
+        if (failureRateThreshold <= 0) {
+            return call.call();
+        }
+        long permit = acquire();
+        if (permit < 0) {
+            rejected.increment();
+            throw new SendApiException(503, "Circuit breaker " + name + " is open, call not attempted.", REASON_CODE, "local", null);
+        }
+        boolean failed = true;
+        try {
+            T response = call.call();
+            failed = false;
+            return response;
+        } catch (SendApiException e) {
+            failed = isFailure(e);
+            throw e;
+        } finally {
+            record(permit, failed);
+        }
+    }
+
+    /**
+     * @return True if the error means the API is degraded, rather than the request being wrong
+     */
+    private static boolean isFailure(SendApiException e) {
+        return e.getHttpStatus() == 0 || e.getHttpStatus() >= 500;
+    }
+
+    /**
+     * @return The generation the call is made in, or -1 if the call is not allowed
+     */
+    private synchronized long acquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return generation;
+        }
+        if (state == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+            probesStarted++;
+            return generation;
+        }
+        return -1;
+    }
+
+    private synchronized void record(long permit, boolean failed) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                transition(State.OPEN);
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            if (recorded == window.length) {
+                failures -= window[position] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            window[position] = failed;
+            failures += failed ? 1 : 0;
+            position = (position + 1) % window.length;
+            if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+            log.warn("Circuit breaker {} opened, calls fail fast for {} ms.", name, TimeUnit.NANOSECONDS.toMillis(openNanos));
+        } else if (next == State.CLOSED) {
+            log.info("Circuit breaker {} closed.", name);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Number of calls failed without being made because the breaker was open
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public enum State {
+        /** Calls are made and their outcomes recorded. **/
+        CLOSED,
+        /** Calls fail immediately. **/
+        OPEN,
+        /** A few probe calls are made to decide whether to close or open again. **/
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,120 @@
+package mastercardsend.api.p2p.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How much of each API call is logged, set by the diagnostics.level property, and the fraction
+ * diagnostics.success-sample-rate of successful calls that are logged at all; failures are always logged.
+ * Payloads are only rendered to JSON when the level asks for them or when a caller reads them,
+ * and rendering is timed in the global meter registry.
+ */
+@Component
+public class Diagnostics {
+    public static final String RENDER = "p2p.render";
+    // Shared, preconfigured writer, thread-safe
+    private static final ObjectWriter PRETTY_WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
+    private final Level level;
+    private final double successSampleRate;
+
+    /**
+     * @param env Environment from which property details are obtained
+     */
+    @Autowired
+    public Diagnostics(Environment env) {
+        this(Level.valueOf(env.getProperty("diagnostics.level", "summary").trim().toUpperCase()),
+                env.getProperty("diagnostics.success-sample-rate", Double.class, 1.0));
+    }
+
+    public Diagnostics(Level level) {
+        this(level, 1.0);
+    }
+
+    /**
+     * @param level How much of each call is logged
+     * @param successSampleRate Fraction of the successful calls logged, between 0 and 1
+     */
+    public Diagnostics(Level level, double successSampleRate) {
+        this.level = level;
+        this.successSampleRate = successSampleRate;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return True if request and response payloads are logged
+     */
+    public boolean isFull() {
+        return level == Level.FULL;
+    }
+
+    /**
+     * @return True if a one line summary of each call is logged
+     */
+    public boolean isSummary() {
+        return level != Level.OFF;
+    }
+
+    /**
+     * @return True if this successful call is logged, as drawn at the success sample rate
+     */
+    public boolean sampleSuccess() {
+        return isSummary() && (successSampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < successSampleRate);
+    }
+
+    /**
+     * Attach a payload to a log event without rendering it: the returned value renders the payload as one line
+     * of JSON when it is converted to a string, which the asynchronous appender does on its own thread.
+     * @param payload Request or response, not modified after it is logged
+     * @return Value rendering the payload
+     */
+    public static Object json(Object payload) {
+        return new Object() {
+            @Override
+            public String toString() {
+                try {
+                    return WRITER.writeValueAsString(payload);
+                } catch (JsonProcessingException e) {
+                    return "Could not convert " + payload.getClass().getSimpleName() + " to JSON.";
+                }
+            }
+        };
+    }
+
+    /**
+     * Render a payload as pretty-printed JSON.
+     * @param payload Request or response to render
+     * @return The JSON, or a short message if the payload could not be converted
+     */
+    public static String render(Object payload) {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        try {
+            return PRETTY_WRITER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            return "Could not convert " + payload.getClass().getSimpleName() + " to JSON.";
+        } finally {
+            sample.stop(Metrics.timer(RENDER, "payload", payload.getClass().getSimpleName()));
+        }
+    }
+
+    public enum Level {
+        /** Nothing is logged. **/
+        OFF,
+        /** One line per call, payloads are not rendered. **/
+        SUMMARY,
+        /** Request and response payloads are attached to the line, and the SDK debug output is enabled. **/
+        FULL
+    }
+}
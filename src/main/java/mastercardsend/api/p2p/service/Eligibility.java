@@ -0,0 +1,54 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Immutable receiving eligibility of a recipient account.
+ */
+public final class Eligibility {
+    private final boolean eligible;
+    private final TransferError error;
+    private final boolean cacheable;
+
+    private Eligibility(boolean eligible, TransferError error, boolean cacheable) {
+        this.eligible = eligible;
+        this.error = error;
+        this.cacheable = cacheable;
+    }
+
+    public static Eligibility eligible() {
+        return new Eligibility(true, null, true);
+    }
+
+    /**
+     * @param reason Reason returned by the AccountInfo API
+     * @return Ineligibility as answered by the API
+     */
+    public static Eligibility ineligible(TransferError reason) {
+        return new Eligibility(false, reason, true);
+    }
+
+    /**
+     * @param error Error of the failed AccountInfo call
+     * @return Ineligibility which must not be cached
+     */
+    public static Eligibility failed(TransferError error) {
+        return new Eligibility(false, error, false);
+    }
+
+    public boolean isEligible() {
+        return eligible;
+    }
+
+    /**
+     * @return Why the recipient is not eligible, null if eligible
+     */
+    public TransferError getError() {
+        return error;
+    }
+
+    /**
+     * @return False when the result comes from a failed call and must not be reused
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+}
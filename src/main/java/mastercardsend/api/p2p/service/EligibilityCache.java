@@ -0,0 +1,191 @@
+package mastercardsend.api.p2p.service;
+
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache of recipient receiving eligibility.
+ * Eligible and ineligible results expire after separate TTLs, the least recently used entry is evicted
+ * once the cache is full, and concurrent lookups of the same key share a single upstream call.
+ */
+public class EligibilityCache {
+    private final int maximumSize;
+    private final long positiveTtlNanos;
+    private final long negativeTtlNanos;
+    // Access ordered so that the eldest entry is the least recently used one
+    private final Map<String, Entry> entries;
+    // Upstream calls currently in flight, by key
+    private final ConcurrentMap<String, CompletableFuture<Eligibility>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Source of the current time in nanoseconds
+    private final LongSupplier clock;
+
+    /**
+     * @param maximumSize Maximum number of cached results, 0 disables caching
+     * @param positiveTtlSeconds How long an eligible result is kept
+     * @param negativeTtlSeconds How long an ineligible result is kept
+     */
+    public EligibilityCache(int maximumSize, long positiveTtlSeconds, long negativeTtlSeconds) {
+        this(maximumSize, positiveTtlSeconds, negativeTtlSeconds, System::nanoTime);
+    }
+
+    /**
+     * @param maximumSize Maximum number of cached results, 0 disables caching
+     * @param positiveTtlSeconds How long an eligible result is kept
+     * @param negativeTtlSeconds How long an ineligible result is kept
+     * @param clock Source of the current time in nanoseconds
+     */
+    EligibilityCache(int maximumSize, long positiveTtlSeconds, long negativeTtlSeconds, LongSupplier clock) {
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+        this.positiveTtlNanos = TimeUnit.SECONDS.toNanos(positiveTtlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > EligibilityCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached result for the key, or load it when absent or expired.
+     * Only one loader runs per key at a time, other callers wait for its result.
+     * @param key Key as built by {@link #key(MastercardSendPaymentTransfer)}
+     * @param loader Upstream call, its result is only cached when {@link Eligibility#isCacheable()}
+     * @return The eligibility result
+     */
+    public Eligibility get(String key, Supplier<Eligibility> loader) {
+        Eligibility cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        CompletableFuture<Eligibility> load = new CompletableFuture<>();
+        CompletableFuture<Eligibility> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            // a load that completed between the lookup and registering this one is not repeated
+            cached = lookup(key);
+            if (cached != null) {
+                load.complete(cached);
+                return cached;
+            }
+            Eligibility result = loader.get();
+            if (result.isCacheable()) {
+                store(key, result);
+            }
+            load.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private Eligibility lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - clock.getAsLong() <= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.result;
+        }
+    }
+
+    private void store(String key, Eligibility result) {
+        if (maximumSize <= 0) {
+            return;
+        }
+        long ttl = result.isEligible() ? positiveTtlNanos : negativeTtlNanos;
+        synchronized (entries) {
+            entries.put(key, new Entry(result, clock.getAsLong() + ttl));
+        }
+    }
+
+    /**
+     * Build the cache key of a transfer: partner ID, hash of the recipient account URI, currency,
+     * payment type and amount band. The account URI is hashed so that no PAN is kept in memory.
+     * @param paymentTransfer PaymentTransfer model containing the transfer details
+     * @return The cache key
+     */
+    public static String key(MastercardSendPaymentTransfer paymentTransfer) {
+        return paymentTransfer.getPartnerId() +
+                '|' + hash(paymentTransfer.getRecipientAccountUri()) +
+                '|' + paymentTransfer.getCurrency() +
+                '|' + paymentTransfer.getPaymentType() +
+                '|' + (paymentTransfer.getAmount() == null ? "null" : Integer.toString(paymentTransfer.getAmount().band()));
+    }
+
+    private static String hash(String accountUri) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(accountUri).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        private final Eligibility result;
+        private final long expiresAt;
+
+        private Entry(Eligibility result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedging of idempotent reads: when a call has not answered after the recent p95 latency, a second identical
+ * call is sent and the first successful response wins. Only meant for calls that are safe to repeat, such as AccountInfo.
+ * <p>
+ * Enabled with hedge.account-info.enabled. The delay is the hedge.account-info.percentile of the last successful calls,
+ * never below hedge.account-info.min-delay-millis, and hedge.threads bounds the calls in flight; a hedge that finds
+ * no free thread is not sent. The calls run on virtual threads when they are enabled.
+ */
+public class HedgedReads {
+    // Successful calls recorded before the delay is computed from them
+    private static final int WARM_UP = 100;
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    // Latencies of the last successful calls, guarded by itself
+    private final long[] latencies = new long[1024];
+    private long recorded;
+    private volatile long delayNanos;
+
+    /**
+     * @param env Environment from which property details are obtained
+     */
+    public HedgedReads(Environment env) {
+        this.enabled = env.getProperty("hedge.account-info.enabled", Boolean.class, false);
+        this.percentile = env.getProperty("hedge.account-info.percentile", Double.class, 95.0);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(env.getProperty("hedge.account-info.min-delay-millis", Long.class, 50L));
+        this.delayNanos = Math.max(minDelayNanos,
+                TimeUnit.MILLISECONDS.toNanos(env.getProperty("hedge.account-info.initial-delay-millis", Long.class, 500L)));
+        int threads = env.getProperty("hedge.threads", Integer.class, 64);
+
+        // the pool still bounds the calls in flight when its threads are virtual
+        this.executor = enabled
+                ? new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        Threads.factory("hedged-read-", Threads.isVirtual(env)))
+                : null;
+    }
+
+    /**
+     * Make the call, and a second one if the first is slower than the hedging delay.
+     * @param call Idempotent API call
+     * @return The first successful response, or the error of the last call to fail
+     * @throws SendApiException if every call failed
+     */
+    public <T> T call(SendApiCall<T> call) throws SendApiException {
+        if (!enabled) {
+            return call.call();
+        }
+        Attempts<T> attempts = new Attempts<>(call);
+        if (!attempts.start(false)) {
+            return timed(call); // no free thread, call without hedging
+        }
+        try {
+            try {
+                return attempts.result.get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (attempts.start(true)) {
+                    hedges.increment();
+                }
+                return attempts.result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SendApiException) {
+                throw (SendApiException) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SendApiException(0, "Interrupted while waiting for the API.", null, "local", e);
+        }
+    }
+
+    private <T> T timed(SendApiCall<T> call) throws SendApiException {
+        long start = System.nanoTime();
+        T response = call.call();
+        record(System.nanoTime() - start);
+        return response;
+    }
+
+    private void record(long latencyNanos) {
+        synchronized (latencies) {
+            latencies[(int) (recorded++ % latencies.length)] = latencyNanos;
+            if (recorded >= WARM_UP && recorded % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(latencies, (int) Math.min(recorded, latencies.length));
+                Arrays.sort(sorted);
+                int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+                delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+            }
+        }
+    }
+
+    /**
+     * Stop the threads making the calls once they are done.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return Current hedging delay in milliseconds
+     */
+    public double getDelayMillis() {
+        return delayNanos / 1e6;
+    }
+
+    /**
+     * @return Number of second calls sent
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return Number of second calls that answered first
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Calls of one read, completing the result with the first success or, once all have failed, the last failure.
+     */
+    private final class Attempts<T> {
+        private final SendApiCall<T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        private Attempts(SendApiCall<T> call) {
+            this.call = call;
+        }
+
+        /**
+         * @return False if no thread was free to make the call
+         */
+        private boolean start(boolean hedge) {
+            running.incrementAndGet();
+            try {
+                executor.execute(() -> run(hedge));
+                return true;
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                return false;
+            }
+        }
+
+        private void run(boolean hedge) {
+            try {
+                T response = timed(call);
+                if (result.complete(response) && hedge) {
+                    hedgeWins.increment();
+                }
+            } catch (SendApiException | RuntimeException e) {
+                if (running.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package mastercardsend.api.p2p.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Outcomes of the transfers sent with a client transfer reference.
+ * A duplicate submitted while the first one is in flight, retries included, shares its outcome instead of calling
+ * the API again, and a duplicate of a completed transfer gets the stored outcome back. Only final outcomes are stored:
+ * after a transient failure (5xx or no response), a timeout (408), throttling (429) or any failure the retries would
+ * send again, the next submission is sent again with the same reference.
+ */
+public class IdempotencyStore {
+    private final int maximumSize;
+    // Failures worth sending again, as decided by the retries
+    private final Predicate<TransferOutcome> retryable;
+    // Access ordered so that the eldest entry is the least recently used one
+    private final Map<String, TransferOutcome> completed;
+    private final ConcurrentMap<String, CompletableFuture<TransferOutcome>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * @param maximumSize Maximum number of stored outcomes
+     * @param retryable True for the failed outcomes that sending the transfer again may change
+     */
+    public IdempotencyStore(int maximumSize, Predicate<TransferOutcome> retryable) {
+        this.maximumSize = maximumSize;
+        this.retryable = retryable;
+        this.completed = new LinkedHashMap<String, TransferOutcome>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransferOutcome> eldest) {
+                return size() > IdempotencyStore.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Return the outcome of the transfer with this key, sending it only if it is neither in flight nor completed.
+     * @param key Partner ID and transfer reference
+     * @param transfer API call sending the transfer, and retrying it if it fails transiently
+     * @return Future of the outcome of the first submission of the transfer
+     */
+    public CompletableFuture<TransferOutcome> submit(String key, Supplier<CompletableFuture<TransferOutcome>> transfer) {
+        TransferOutcome stored = lookup(key);
+        if (stored != null) {
+            replays.increment();
+            return CompletableFuture.completedFuture(stored);
+        }
+        CompletableFuture<TransferOutcome> call = new CompletableFuture<>();
+        CompletableFuture<TransferOutcome> pending = inFlight.putIfAbsent(key, call);
+        if (pending != null) {
+            replays.increment();
+            return pending;
+        }
+        CompletableFuture<TransferOutcome> sent;
+        try {
+            // completed between the lookup and registering the call
+            stored = lookup(key);
+            sent = stored != null ? CompletableFuture.completedFuture(stored) : transfer.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        sent.whenComplete((outcome, e) -> {
+            // stored before the call is removed, so that a later duplicate finds one or the other
+            if (e == null && isFinal(outcome)) {
+                store(key, outcome);
+            }
+            inFlight.remove(key, call);
+            if (e == null) {
+                call.complete(outcome);
+            } else {
+                call.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+            }
+        });
+        return call;
+    }
+
+    /**
+     * @return True if sending the transfer again can not change its outcome
+     */
+    private boolean isFinal(TransferOutcome outcome) {
+        if (outcome.isSuccess()) {
+            return true;
+        }
+        int status = outcome.getError().getHttpStatus();
+        return status >= 400 && status < 500 && status != 408 && status != 429 && !retryable.test(outcome);
+    }
+
+    private TransferOutcome lookup(String key) {
+        synchronized (completed) {
+            return completed.get(key);
+        }
+    }
+
+    private void store(String key, TransferOutcome outcome) {
+        synchronized (completed) {
+            completed.put(key, outcome);
+        }
+    }
+
+    /**
+     * @return Number of duplicate submissions answered without calling the API
+     */
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    public int size() {
+        synchronized (completed) {
+            return completed.size();
+        }
+    }
+}
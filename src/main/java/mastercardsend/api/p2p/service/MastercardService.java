@@ -1,25 +1,29 @@
 package mastercardsend.api.p2p.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mastercard.api.core.ApiConfig;
-import com.mastercard.api.core.exception.ApiException;
 import com.mastercard.api.core.model.RequestMap;
-import com.mastercard.api.core.security.oauth.OAuthAuthentication;
 import com.mastercard.api.p2p.AccountInfo;
 import com.mastercard.api.p2p.PaymentTransfer;
+import io.micrometer.core.instrument.Timer;
+import mastercardsend.api.p2p.journal.TransferJournal;
+import mastercardsend.api.p2p.model.AccountUri;
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.CurrencyTable;
 import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import jakarta.annotation.PreDestroy;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Service communicating with Mastercard Send PaymentTransfer API
+ * Service communicating with Mastercard Send PaymentTransfer API.
+ * Holds no per-call state, every call returns its own outcome so that the service can be used concurrently.
  */
 @Service
 public class MastercardService {
@@ -53,143 +57,401 @@ public class MastercardService {
     public static final String DEPOSIT_ACCOUNT = "DEPOSIT_ACCOUNT";
     public static final String MOBILE_MONEY_ACCOUNT = "MOBILE_MONEY_ACCOUNT";
     public static final String CASH = "CASH";
-    // Most recent error message
-    private static String error;
-    // Most recent request
-    private static String request;
+    /** Reason code of account URIs rejected locally, before any API call. **/
+    public static final String INVALID_ACCOUNT_URI = "INVALID_ACCOUNT_URI";
+    /** Reason code of amounts rejected locally, before any API call. **/
+    public static final String INVALID_AMOUNT = "INVALID_AMOUNT";
+    /** Reason code of currencies rejected locally, before any API call. **/
+    public static final String INVALID_CURRENCY = "INVALID_CURRENCY";
+    /** Reason code of calls refused because the partner used up its budget of API calls. **/
+    public static final String RATE_LIMITED = "RATE_LIMITED";
+    /** Reason code of calls that ended with an unexpected exception rather than an API response. **/
+    public static final String INTERNAL_ERROR = "INTERNAL_ERROR";
+    private static final Logger log = LoggerFactory.getLogger(MastercardService.class);
+
+    private final SendApiClient client;
+    private final Diagnostics diagnostics;
+    private final TransferJournal journal;
+    private final TransferMetrics metrics;
+    private final EligibilityCache eligibilityCache;
+    private final TransferStatusCache statusCache;
+    private final CurrencyTable currencies;
+    // Null unless transfers are identified by the client transfer reference
+    private final IdempotencyStore idempotencyStore;
+    // Per-partner budgets of AccountInfo and PaymentTransfer calls
+    private final RateLimiter eligibilityLimiter;
+    private final RateLimiter createLimiter;
+    // Fails the API calls fast while the API is degraded
+    private final CircuitBreaker circuitBreaker;
+    private final HedgedReads hedgedReads;
+    private final TransferRetries retries;
 
     /**
-     * Initiate SDK authentication.
+     * @param client Client making the Mastercard Send API calls
+     * @param diagnostics How much of each call is logged
+     * @param journal Journal recording every transfer
+     * @param metrics Timers and gauges of the API calls
      * @param env Environment from which property details are obtained
-     * @throws IOException
      */
     @Autowired
-    public MastercardService(Environment env) throws IOException {
-        String consumerKey = env.getProperty("consumerKey");
-        String keyAlias = env.getProperty("keyAlias");
-        String keyPassword = env.getProperty("keyPassword");
-        InputStream is = new FileInputStream(env.getProperty("p12PrivateKey"));
-
-        ApiConfig.setAuthentication(new OAuthAuthentication(consumerKey, is, keyAlias, keyPassword));
-        ApiConfig.setDebug(true);
-        ApiConfig.setSandbox(true);
+    public MastercardService(SendApiClient client, Diagnostics diagnostics, TransferJournal journal,
+                             TransferMetrics metrics, Environment env) {
+        this.client = client;
+        this.diagnostics = diagnostics;
+        this.journal = journal;
+        this.metrics = metrics;
+        eligibilityCache = new EligibilityCache(
+                env.getProperty("eligibility.cache.maximum-size", Integer.class, 10000),
+                env.getProperty("eligibility.cache.positive-ttl-seconds", Long.class, 300L),
+                env.getProperty("eligibility.cache.negative-ttl-seconds", Long.class, 30L));
+        statusCache = new TransferStatusCache(
+                env.getProperty("transfer.status-cache.maximum-size", Integer.class, 100000),
+                env.getProperty("transfer.status-cache.final-ttl-seconds", Long.class, 3600L),
+                env.getProperty("transfer.status-cache.pending-ttl-seconds", Long.class, 5L));
+        currencies = new CurrencyTable(env.getProperty("currencies.allowed", ""));
+        retries = new TransferRetries(env);
+        idempotencyStore = "client-reference".equals(env.getProperty("idempotency.mode", "generate"))
+                ? new IdempotencyStore(env.getProperty("idempotency.store.maximum-size", Integer.class, 100000), retries::isRetryable)
+                : null;
+        eligibilityLimiter = new RateLimiter("eligibility", env);
+        createLimiter = new RateLimiter("create", env);
+        circuitBreaker = new CircuitBreaker("sendapi", env);
+        hedgedReads = new HedgedReads(env);
+        metrics.bind(eligibilityCache);
+        metrics.bind(statusCache);
+        metrics.bind(circuitBreaker);
+        metrics.bind(hedgedReads);
+        metrics.bind(retries);
+        if (idempotencyStore != null) {
+            metrics.bind(idempotencyStore);
+        }
     }
 
     /**
-     * Initiate the Payment Transfer API call to get the recipient account information.
-     * Specifically checks whether the recipient is able to receive funds.
+     * Check whether the recipient is able to receive funds.
      * @param paymentTransfer PaymentTransfer Spring model containing the transfer details
      * @return True if the the recipient can receive funds, false if not
      */
     public boolean isEligible(MastercardSendPaymentTransfer paymentTransfer) {
+        return checkEligibility(paymentTransfer).isEligible();
+    }
+
+    /**
+     * Check whether the recipient is able to receive funds, and why not.
+     * Results are served from the eligibility cache when the same recipient was checked recently,
+     * and malformed recipient account URIs, amounts and currencies fail without an API call.
+     * @param paymentTransfer PaymentTransfer Spring model containing the transfer details
+     * @return The recipient eligibility
+     * @throws RateLimitExceededException if the partner has used up its budget of eligibility calls
+     */
+    public Eligibility checkEligibility(MastercardSendPaymentTransfer paymentTransfer) {
+        TransferError invalid = checkAmount(paymentTransfer);
+        if (invalid == null) {
+            invalid = checkAccountUri("Recipient", paymentTransfer.getRecipientAccountUri());
+        }
+        if (invalid != null) {
+            return Eligibility.failed(invalid);
+        }
+        Timer.Sample sample = metrics.startEligibility();
+        Eligibility eligibility = null;
+        try {
+            eligibility = eligibilityCache.get(EligibilityCache.key(paymentTransfer), () -> readEligibility(paymentTransfer));
+            return eligibility;
+        } catch (RuntimeException e) { // e.g. over the partner budget, timed as a failure and rethrown
+            eligibility = Eligibility.failed(unexpected(e));
+            throw e;
+        } finally {
+            metrics.stopEligibility(sample, paymentTransfer, eligibility != null ? eligibility : Eligibility.failed(unexpected(null)));
+        }
+    }
+
+    /**
+     * Initiate the Payment Transfer API call to get the recipient account information.
+     * The call is hedged when enabled, and every attempt goes through the circuit breaker.
+     * @param paymentTransfer PaymentTransfer Spring model containing the transfer details
+     * @return The recipient eligibility, not cacheable if the call failed
+     */
+    private Eligibility readEligibility(MastercardSendPaymentTransfer paymentTransfer) {
+        RequestMap map = new RequestMap();
+        map.set("partnerId", paymentTransfer.getPartnerId());
+        map.set("account_info.account_uri", paymentTransfer.getRecipientAccountUri());
+        map.set("account_info.amount", String.valueOf(paymentTransfer.getAmount()));
+        map.set("account_info.currency", paymentTransfer.getCurrency());
+        map.set("account_info.payment_type", paymentTransfer.getPaymentType());
+        eligibilityLimiter.acquire(paymentTransfer.getPartnerId());
         try {
-            RequestMap map = new RequestMap();
-            map.set("partnerId", paymentTransfer.getPartnerId());
-            map.set("account_info.account_uri", paymentTransfer.getRecipientAccountUri());
-            map.set("account_info.amount", paymentTransfer.getAmount());
-            map.set("account_info.currency", paymentTransfer.getCurrency());
-            map.set("account_info.payment_type", paymentTransfer.getPaymentType());
-
-            AccountInfo accountInfo = new AccountInfo(map).read(); // API call
+            AccountInfo accountInfo = hedgedReads.call(() -> circuitBreaker.call(() -> client.readAccountInfo(map))); // API call
             boolean eligible = (boolean) accountInfo.get("account_info.receiving_eligibility.eligible"); // check eligibility
-            if (!eligible) {
-                error = (String) accountInfo.get("account_info.receiving_eligibility.reason_description");
+            if (eligible) {
+                return Eligibility.eligible();
             }
-            return eligible;
-        } catch (ApiException e) {
-            error = "HttpStatus: " + e.getHttpStatus() +
-                    "\nMessage: " + e.getMessage() +
-                    "\nReason Code: " + e.getReasonCode() +
-                    "\nSource: " + e.getSource() ;
-            printErrors(e);
-            return false;
+            return Eligibility.ineligible(new TransferError(0,
+                    (String) accountInfo.get("account_info.receiving_eligibility.reason_description"),
+                    (String) accountInfo.get("account_info.receiving_eligibility.reason_code"),
+                    "AccountInfo"));
+        } catch (SendApiException e) {
+            printErrors(e, null);
+            return Eligibility.failed(TransferError.from(e));
+        }
+    }
+
+    /**
+     * Initiate the Disbursements API call to push a paymentTransfer, waiting for its retries if it fails transiently.
+     * Only meant for worker threads, request handlers use {@link #createAsync(MastercardSendPaymentTransfer)}.
+     * @param paymentTransfer Disbursement Spring model containing the paymentTransfer details
+     * @return Outcome holding the response if the paymentTransfer was successfully pushed, the error if failed,
+     * and the request in both cases
+     * @throws RateLimitExceededException if the partner has used up its budget of payment transfer calls
+     */
+    public TransferOutcome create(MastercardSendPaymentTransfer paymentTransfer) {
+        try {
+            return createAsync(paymentTransfer).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Initiate the Disbursements API call to push a paymentTransfer. The first attempt is made on the calling thread,
+     * and transient failures are retried in the background with the same transfer reference.
+     * With idempotency.mode=client-reference, a transfer carrying its own transfer reference is only sent once:
+     * duplicates get the outcome of the first submission.
+     * @param paymentTransfer Disbursement Spring model containing the paymentTransfer details
+     * @return Future of the outcome, already completed unless the transfer is being retried
+     * @throws RateLimitExceededException if the partner has used up its budget of payment transfer calls
+     */
+    public CompletableFuture<TransferOutcome> createAsync(MastercardSendPaymentTransfer paymentTransfer) {
+        String transferReference = paymentTransfer.getTransferReference();
+        if (idempotencyStore == null || transferReference == null || transferReference.isEmpty()) {
+            String generated = UUID.randomUUID().toString(); // kept for every attempt
+            return retries.call(() -> send(paymentTransfer, generated));
         }
+        return idempotencyStore.submit(paymentTransfer.getPartnerId() + ':' + transferReference,
+                () -> retries.call(() -> send(paymentTransfer, transferReference)));
     }
 
     /**
-     * Initiate the Disbursements API call to push a paymentTransfer.
+     * Push a paymentTransfer with the given reference.
      * @param paymentTransfer Disbursement Spring model containing the paymentTransfer details
-     * @return Response containing all the paymentTransfer details if the paymentTransfer was successfully pushed, null if failed
+     * @param transferReference Reference sent with the transfer
+     * @return Outcome of the API call
      */
-    public static PaymentTransfer create(MastercardSendPaymentTransfer paymentTransfer) {
-        ObjectMapper mapper = new ObjectMapper();
+    private TransferOutcome send(MastercardSendPaymentTransfer paymentTransfer, String transferReference) {
+        RequestMap map = new RequestMap();
+        map.set("partnerId", paymentTransfer.getPartnerId());
+        map.set("payment_transfer.transfer_reference", transferReference);
+        map.set("payment_transfer.funding_source", paymentTransfer.getFundingSource());
+        map.set("payment_transfer.payment_type", paymentTransfer.getPaymentType());
+        map.set("payment_transfer.amount", String.valueOf(paymentTransfer.getAmount()));
+        map.set("payment_transfer.currency", paymentTransfer.getCurrency());
+        map.set("payment_transfer.sender_account_uri", paymentTransfer.getSenderAccountUri());
+        map.set("payment_transfer.sender.first_name", paymentTransfer.getSenderFirstName());
+        map.set("payment_transfer.sender.last_name", paymentTransfer.getSenderLastName());
+        map.set("payment_transfer.sender.address.line1", paymentTransfer.getSenderAddressLine1());
+        map.set("payment_transfer.sender.address.city", paymentTransfer.getSenderCity());
+        map.set("payment_transfer.sender.address.postal_code", paymentTransfer.getSenderPostalCode());
+        map.set("payment_transfer.sender.address.country_subdivision", paymentTransfer.getSenderCountrySubdivision());
+        map.set("payment_transfer.sender.address.country", paymentTransfer.getSenderCountry());
+        map.set("payment_transfer.recipient_account_uri", paymentTransfer.getRecipientAccountUri());
+        map.set("payment_transfer.recipient.first_name", paymentTransfer.getRecipientFirstName());
+        map.set("payment_transfer.recipient.last_name", paymentTransfer.getRecipientLastName());
+        map.set("payment_transfer.recipient.address.line1", paymentTransfer.getRecipientAddressLine1());
+        map.set("payment_transfer.recipient.address.city", paymentTransfer.getRecipientCity());
+        map.set("payment_transfer.recipient.address.postal_code", paymentTransfer.getRecipientPostalCode());
+        if (paymentTransfer.getRecipientNameOnAccount() != null) { // for when payment is transferred into an account and not a card
+            map.set("payment_transfer.recipient.name_on_account", paymentTransfer.getRecipientNameOnAccount());
+        }
+        TransferError invalid = checkAmount(paymentTransfer);
+        if (invalid == null) {
+            invalid = checkAccountUri("Sender", paymentTransfer.getSenderAccountUri());
+        }
+        if (invalid == null) {
+            invalid = checkAccountUri("Recipient", paymentTransfer.getRecipientAccountUri());
+        }
+        if (invalid != null) { // never sent, so neither throttled nor journaled
+            return TransferOutcome.failure(map, invalid);
+        }
+        createLimiter.acquire(paymentTransfer.getPartnerId());
+        journal.started(transferReference, paymentTransfer);
+        Timer.Sample sample = metrics.startCreate();
+        TransferOutcome outcome = null;
         try {
-            RequestMap map = new RequestMap();
-            map.set("partnerId", paymentTransfer.getPartnerId());
-            map.set("payment_transfer.transfer_reference", UUID.randomUUID().toString());
-            map.set("payment_transfer.funding_source", paymentTransfer.getFundingSource());
-            map.set("payment_transfer.payment_type", paymentTransfer.getPaymentType());
-            map.set("payment_transfer.amount", paymentTransfer.getAmount());
-            map.set("payment_transfer.currency", paymentTransfer.getCurrency());
-            map.set("payment_transfer.sender_account_uri", paymentTransfer.getSenderAccountUri());
-            map.set("payment_transfer.sender.first_name", paymentTransfer.getSenderFirstName());
-            map.set("payment_transfer.sender.last_name", paymentTransfer.getSenderLastName());
-            map.set("payment_transfer.sender.address.line1", paymentTransfer.getSenderAddressLine1());
-            map.set("payment_transfer.sender.address.city", paymentTransfer.getSenderCity());
-            map.set("payment_transfer.sender.address.postal_code", paymentTransfer.getSenderPostalCode());
-            map.set("payment_transfer.sender.address.country_subdivision", paymentTransfer.getSenderCountrySubdivision());
-            map.set("payment_transfer.sender.address.country", paymentTransfer.getSenderCountry());
-            map.set("payment_transfer.recipient_account_uri", paymentTransfer.getRecipientAccountUri());
-            map.set("payment_transfer.recipient.first_name", paymentTransfer.getRecipientFirstName());
-            map.set("payment_transfer.recipient.last_name", paymentTransfer.getRecipientLastName());
-            map.set("payment_transfer.recipient.address.line1", paymentTransfer.getRecipientAddressLine1());
-            map.set("payment_transfer.recipient.address.city", paymentTransfer.getRecipientCity());
-            map.set("payment_transfer.recipient.address.postal_code", paymentTransfer.getRecipientPostalCode());
-            if (paymentTransfer.getRecipientNameOnAccount() != null) { // for when payment is transferred into an account and not a card
-                map.set("payment_transfer.recipient.name_on_account", paymentTransfer.getRecipientNameOnAccount());
+            PaymentTransfer response = circuitBreaker.call(() -> client.createPaymentTransfer(map)); // API call
+            outcome = TransferOutcome.success(map, response);
+            statusCache.put(paymentTransfer.getPartnerId(), response);
+
+            if (diagnostics.sampleSuccess()) {
+                // a no-op builder when INFO is disabled, and payloads are only rendered by the appender
+                LoggingEventBuilder event = log.atInfo()
+                        .addKeyValue("partner_id", paymentTransfer.getPartnerId())
+                        .addKeyValue("transfer_reference", transferReference)
+                        .addKeyValue("transfer_id", response.get("payment_transfer.id"));
+                if (diagnostics.isFull()) {
+                    event = event.addKeyValue("request", Diagnostics.json(map))
+                            .addKeyValue("response", Diagnostics.json(response));
+                }
+                event.log("Payment transfer success");
+            }
+            return outcome;
+        } catch (SendApiException e) {
+            outcome = TransferOutcome.failure(map, TransferError.from(e));
+            printErrors(e, outcome);
+            return outcome;
+        } catch (RuntimeException e) { // not an API error: still timed and journaled as failed, then rethrown
+            if (outcome == null) { // unless the transfer was already made
+                outcome = TransferOutcome.failure(map, unexpected(e));
             }
-            request = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(map); // to display on page
+            throw e;
+        } finally {
+            if (outcome == null) {
+                outcome = TransferOutcome.failure(map, unexpected(null));
+            }
+            metrics.stopCreate(sample, paymentTransfer, outcome);
+            journal.completed(paymentTransfer.getPartnerId(), transferReference, outcome);
+        }
+    }
 
-            PaymentTransfer response = PaymentTransfer.create(map); // API call
+    /**
+     * @param e Exception a call ended with instead of an API response, null if not a RuntimeException
+     * @return The error recorded for the call
+     */
+    private static TransferError unexpected(RuntimeException e) {
+        if (e instanceof RateLimitExceededException) {
+            return new TransferError(429, e.getMessage(), RATE_LIMITED, "local");
+        }
+        return new TransferError(0, e == null ? "Call failed unexpectedly." : String.valueOf(e.getMessage()), INTERNAL_ERROR, "local");
+    }
 
-            String responseString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(response);
+    /**
+     * Read a payment transfer, from the status cache when it was created or read recently.
+     * Concurrent reads of a transfer missing from the cache share a single API call.
+     * @param partnerId Partner the transfer belongs to
+     * @param transferId Transfer ID assigned by the API
+     * @return The payment transfer with its current status
+     * @throws SendApiException if the API call failed, with status 404 if there is no such transfer
+     */
+    public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException {
+        return statusCache.get(partnerId, transferId,
+                () -> circuitBreaker.call(() -> client.readPaymentTransfer(partnerId, transferId))); // API call
+    }
 
-            System.out.println("Request:\n" + request);
-            System.out.println("\nResponse:\n" + responseString);
-            System.out.println("\nPayment transfer success!");
+    /**
+     * Read a payment transfer by the reference it was sent with. The reference is resolved to the transfer ID
+     * from the status cache, or from the journal for transfers no longer cached.
+     * @param partnerId Partner the transfer belongs to
+     * @param transferReference Reference sent with the transfer
+     * @return The payment transfer with its current status, null if no created transfer has this reference
+     * @throws SendApiException if the API call failed
+     */
+    public PaymentTransfer readPaymentTransferByReference(String partnerId, String transferReference) throws SendApiException {
+        String transferId = statusCache.getTransferId(partnerId, transferReference);
+        if (transferId == null) {
+            transferId = journal.findTransferId(partnerId, transferReference);
+        }
+        return transferId == null ? null : readPaymentTransfer(partnerId, transferId);
+    }
 
-            return response;
-        } catch (JsonProcessingException e) {
-            System.err.println("Could not convert request to JSON.");
-            return null;
-        } catch (ApiException e) {
-            System.out.println("Request:\n" + request);
-            error = "HttpStatus: " + e.getHttpStatus() +
-                    "\nMessage: " + e.getMessage() +
-                    "\nReason Code: " + e.getReasonCode() +
-                    "\nSource: " + e.getSource() ;
-            printErrors(e);
+    /**
+     * Check the amount and currency locally: a positive amount, in an allowed ISO 4217 currency.
+     * @param paymentTransfer PaymentTransfer Spring model containing the transfer details
+     * @return The error, null if both are valid
+     */
+    private TransferError checkAmount(MastercardSendPaymentTransfer paymentTransfer) {
+        Amount amount = paymentTransfer.getAmount();
+        if (amount == null || !amount.isPositive()) {
+            return new TransferError(400, "Amount must be a positive number of minor units.", INVALID_AMOUNT, "local");
+        }
+        if (!currencies.isAllowed(paymentTransfer.getCurrency())) {
+            return new TransferError(400, "Currency " + paymentTransfer.getCurrency() + " is not accepted.", INVALID_CURRENCY, "local");
+        }
+        return null;
+    }
 
+    /**
+     * Check an account URI locally: Luhn and expiry for cards, mod-97 for IBANs.
+     * @param party Sender or Recipient, for the error message
+     * @param accountUri Account URI of the party, not checked if absent
+     * @return The error, null if the URI is valid
+     */
+    private static TransferError checkAccountUri(String party, String accountUri) {
+        if (accountUri == null) {
             return null;
         }
+        String problem;
+        try {
+            problem = AccountUri.parse(accountUri).validate();
+        } catch (IllegalArgumentException e) {
+            problem = e.getMessage();
+        }
+        return problem == null ? null : new TransferError(400, party + " account URI is invalid: " + problem + ".",
+                INVALID_ACCOUNT_URI, "local");
     }
 
     /**
-     * Print errors to the console.
-     * @param e
+     * Log a failed API call, with as much detail as the diagnostics level allows.
+     * @param e Error of the call
+     * @param outcome Outcome of the failed transfer, null for eligibility checks
      */
-    private static void printErrors(ApiException e) {
-        System.err.println("HttpStatus: " + e.getHttpStatus());
-        System.err.println("Message: " + e.getMessage());
-        System.err.println("ReasonCode: " + e.getReasonCode());
-        System.err.println("Source: " + e.getSource());
-        System.err.println("Request:\n" + request);
+    private void printErrors(SendApiException e, TransferOutcome outcome) {
+        if (!diagnostics.isSummary()) {
+            return;
+        }
+        LoggingEventBuilder event = log.atWarn()
+                .addKeyValue("http_status", e.getHttpStatus())
+                .addKeyValue("reason_code", e.getReasonCode())
+                .addKeyValue("source", e.getSource());
+        if (outcome != null) {
+            event = event.addKeyValue("transfer_reference", outcome.getRequestMap().get("payment_transfer.transfer_reference"));
+            if (diagnostics.isFull()) {
+                event = event.addKeyValue("request", Diagnostics.json(outcome.getRequestMap()));
+            }
+        }
+        event.log(outcome == null ? "AccountInfo call failed: {}" : "Payment transfer failed: {}", e.getMessage());
     }
 
     /**
-     * Return the last received error message.
-     * @return The last received error message
+     * Return the cache in front of the eligibility check.
+     * @return The eligibility cache
      */
-    public String getError() {
-        return error;
+    public EligibilityCache getEligibilityCache() {
+        return eligibilityCache;
     }
 
+    /**
+     * Return the cache in front of the payment transfer reads.
+     * @return The transfer status cache
+     */
+    public TransferStatusCache getStatusCache() {
+        return statusCache;
+    }
 
     /**
-     * Return the last request.
-     * @return The last request submitted
+     * Return the circuit breaker in front of the API calls.
+     * @return The circuit breaker
      */
-    public String getRequest() {
-        return request;
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Return the retries of failed payment transfers.
+     * @return The transfer retries
+     */
+    public TransferRetries getRetries() {
+        return retries;
+    }
+
+    /**
+     * Return the store of client transfer references.
+     * @return The idempotency store, null unless idempotency.mode=client-reference
+     */
+    public IdempotencyStore getIdempotencyStore() {
+        return idempotencyStore;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retries.shutdown();
+        hedgedReads.shutdown();
     }
 }
@@ -0,0 +1,63 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Credentials and partner ID of one partner served by this node, see {@link PartnerRegistry}.
+ */
+public final class PartnerProfile {
+    private final String tenant;
+    private final String partnerId;
+    private final String consumerKey;
+    private final String p12PrivateKey;
+    private final String keyAlias;
+    private final String keyPassword;
+
+    /**
+     * @param tenant Name selecting the partner in requests
+     * @param partnerId Partner ID sent with the API calls
+     * @param consumerKey OAuth consumer key of the partner
+     * @param p12PrivateKey Path of the p12 file holding the signing key
+     * @param keyAlias Alias of the signing key in the p12 file
+     * @param keyPassword Password of the p12 file
+     */
+    public PartnerProfile(String tenant, String partnerId, String consumerKey, String p12PrivateKey,
+                          String keyAlias, String keyPassword) {
+        this.tenant = tenant;
+        this.partnerId = partnerId;
+        this.consumerKey = consumerKey;
+        this.p12PrivateKey = p12PrivateKey;
+        this.keyAlias = keyAlias;
+        this.keyPassword = keyPassword;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getPartnerId() {
+        return partnerId;
+    }
+
+    public String getConsumerKey() {
+        return consumerKey;
+    }
+
+    public String getP12PrivateKey() {
+        return p12PrivateKey;
+    }
+
+    public String getKeyAlias() {
+        return keyAlias;
+    }
+
+    public String getKeyPassword() {
+        return keyPassword;
+    }
+
+    /**
+     * @return The tenant and partner ID, never the credentials
+     */
+    @Override
+    public String toString() {
+        return tenant + " (partner " + partnerId + ")";
+    }
+}
@@ -0,0 +1,128 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Partners served by this node, so that a single node transfers for all of them. The default tenant is the partner
+ * of the consumerKey, p12PrivateKey, keyAlias, keyPassword and partnerId properties. Further tenants are listed in
+ * partners.tenants and each configured with partners.{tenant}.partner-id, .consumer-key, .p12-private-key, .key-alias
+ * and .key-password. Requests select their tenant with the {@link #TENANT_HEADER} header, which decides the partner ID
+ * they are sent for: a partner ID in the request body is never used.
+ * <p>
+ * The clients sign each call with the credentials of the partner ID it is sent for, looked up with
+ * {@link #forPartnerId(String)}, so calls for different partners run concurrently without sharing any signing state.
+ * Calls for a partner ID of no tenant are never signed, rather than signed with the default credentials.
+ * Profiles are read once at startup and never change, so lookups need no locking.
+ */
+@Component
+public class PartnerRegistry {
+    /** Header selecting the tenant of a request, the default tenant when absent. **/
+    public static final String TENANT_HEADER = "X-Partner-Tenant";
+    /** Reason code of calls for a partner ID of no tenant. **/
+    public static final String UNKNOWN_PARTNER = "UNKNOWN_PARTNER";
+    /** Name of the tenant configured by the top-level properties. **/
+    public static final String DEFAULT_TENANT = "default";
+
+    private final PartnerProfile defaultPartner;
+    private final Map<String, PartnerProfile> byTenant;
+    private final Map<String, PartnerProfile> byPartnerId;
+
+    /**
+     * @param env Environment from which property details are obtained
+     * @throws IllegalStateException if a tenant is missing a property, or two tenants share a partner ID
+     */
+    @Autowired
+    public PartnerRegistry(Environment env) {
+        defaultPartner = new PartnerProfile(DEFAULT_TENANT, env.getProperty("partnerId"), env.getProperty("consumerKey"),
+                env.getProperty("p12PrivateKey"), env.getProperty("keyAlias"), env.getProperty("keyPassword"));
+        Map<String, PartnerProfile> tenants = new LinkedHashMap<>();
+        Map<String, PartnerProfile> partnerIds = new HashMap<>();
+        tenants.put(DEFAULT_TENANT, defaultPartner);
+        if (defaultPartner.getPartnerId() != null) {
+            partnerIds.put(defaultPartner.getPartnerId(), defaultPartner);
+        }
+        for (String tenant : env.getProperty("partners.tenants", "").split(",")) {
+            tenant = tenant.trim();
+            if (tenant.isEmpty()) {
+                continue;
+            }
+            String prefix = "partners." + tenant + '.';
+            PartnerProfile partner = new PartnerProfile(tenant, required(env, prefix + "partner-id"),
+                    required(env, prefix + "consumer-key"), required(env, prefix + "p12-private-key"),
+                    required(env, prefix + "key-alias"), env.getProperty(prefix + "key-password", ""));
+            if (tenants.putIfAbsent(tenant, partner) != null) {
+                throw new IllegalStateException("Tenant " + tenant + " is configured twice");
+            }
+            PartnerProfile other = partnerIds.putIfAbsent(partner.getPartnerId(), partner);
+            if (other != null) {
+                throw new IllegalStateException("Tenants " + other.getTenant() + " and " + tenant
+                        + " have the same partner ID " + partner.getPartnerId());
+            }
+        }
+        byTenant = Collections.unmodifiableMap(tenants);
+        byPartnerId = Collections.unmodifiableMap(partnerIds);
+    }
+
+    private static String required(Environment env, String key) {
+        String value = env.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalStateException(key + " is not set");
+        }
+        return value.trim();
+    }
+
+    /**
+     * @param tenant Tenant selected by a request, null or empty for the default tenant
+     * @return The partner of the tenant
+     * @throws UnknownTenantException if no such tenant is configured
+     */
+    public PartnerProfile get(String tenant) {
+        if (tenant == null || tenant.isEmpty()) {
+            return defaultPartner;
+        }
+        PartnerProfile partner = byTenant.get(tenant);
+        if (partner == null) {
+            throw new UnknownTenantException(tenant);
+        }
+        return partner;
+    }
+
+    /**
+     * @param partnerId Partner ID a call is sent for
+     * @return The partner whose credentials sign the call
+     * @throws UnknownTenantException if no tenant has this partner ID
+     */
+    public PartnerProfile forPartnerId(String partnerId) {
+        if (Objects.equals(partnerId, defaultPartner.getPartnerId())) {
+            return defaultPartner; // also when the default partner ID is not configured
+        }
+        PartnerProfile partner = partnerId == null ? null : byPartnerId.get(partnerId);
+        if (partner == null) {
+            throw new UnknownTenantException(partnerId, "No tenant has partner ID " + partnerId);
+        }
+        return partner;
+    }
+
+    /**
+     * @return The partner of the top-level properties
+     */
+    public PartnerProfile getDefault() {
+        return defaultPartner;
+    }
+
+    /**
+     * @return Every partner, the default one first
+     */
+    public Collection<PartnerProfile> getPartners() {
+        return byTenant.values();
+    }
+}
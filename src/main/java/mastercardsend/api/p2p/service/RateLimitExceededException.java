@@ -0,0 +1,28 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Thrown when a partner has used up its budget of Mastercard Send API calls.
+ */
+public class RateLimitExceededException extends RuntimeException {
+    private final long retryAfterMillis;
+
+    /**
+     * @param message Description of the exhausted budget
+     * @param retryAfterMillis How long until the budget allows the call
+     */
+    public RateLimitExceededException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * @return The Retry-After header value, in whole seconds rounded up
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMillis + 999) / 1000);
+    }
+}
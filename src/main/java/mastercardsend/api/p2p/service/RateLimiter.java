@@ -0,0 +1,127 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-partner token bucket in front of one kind of Mastercard Send API call.
+ * Each bucket is a single atomic timestamp (the theoretical arrival time of the next call), so acquiring a token
+ * is one compare-and-set without locks. A call arriving slightly early reserves its slot and waits for it,
+ * at most ratelimit.max-wait-millis; a call that would wait longer is rejected with the time until its slot.
+ * <p>
+ * Budgets are read from ratelimit.{name}.rate-per-second and ratelimit.{name}.burst, and can be overridden per partner
+ * with ratelimit.{name}.partners.{partnerId}.rate-per-second and .burst. A rate of 0 disables the limit.
+ */
+public class RateLimiter {
+    private final String name;
+    private final Environment env;
+    private final double defaultRate;
+    private final int defaultBurst;
+    private final long maxWaitNanos;
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    // Source of the current time in nanoseconds
+    private final LongSupplier clock;
+
+    /**
+     * @param name Kind of call, e.g. eligibility or create
+     * @param env Environment from which property details are obtained
+     */
+    public RateLimiter(String name, Environment env) {
+        this(name, env, System::nanoTime);
+    }
+
+    /**
+     * @param name Kind of call, e.g. eligibility or create
+     * @param env Environment from which property details are obtained
+     * @param clock Source of the current time in nanoseconds
+     */
+    RateLimiter(String name, Environment env, LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+        this.env = env;
+        this.defaultRate = env.getProperty("ratelimit." + name + ".rate-per-second", Double.class, 0.0);
+        this.defaultBurst = env.getProperty("ratelimit." + name + ".burst", Integer.class, 1);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(env.getProperty("ratelimit.max-wait-millis", Long.class, 250L));
+    }
+
+    /**
+     * Take a token from the partner bucket, waiting briefly if the next token is about to be available.
+     * @param partnerId Partner making the call
+     * @throws RateLimitExceededException if the token is not available within the maximum wait
+     */
+    public void acquire(String partnerId) {
+        long waitNanos = reserve(partnerId);
+        if (waitNanos < 0) {
+            throw new RateLimitExceededException("Rate limit of " + name + " calls exceeded for partner " + partnerId + ".",
+                    TimeUnit.NANOSECONDS.toMillis(-waitNanos));
+        }
+        while (waitNanos > 0) {
+            long start = System.nanoTime();
+            LockSupport.parkNanos(waitNanos);
+            waitNanos -= System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Reserve the next token of the partner bucket, without waiting for it.
+     * @param partnerId Partner making the call
+     * @return How long to wait for the reserved token, or minus the time until a token is available if it is further
+     * away than the maximum wait, in which case nothing is reserved
+     */
+    long reserve(String partnerId) {
+        Bucket bucket = buckets.computeIfAbsent(String.valueOf(partnerId), this::bucket);
+        return bucket.reserve(clock.getAsLong(), maxWaitNanos);
+    }
+
+    private Bucket bucket(String partnerId) {
+        String prefix = "ratelimit." + name + ".partners." + partnerId;
+        double rate = env.getProperty(prefix + ".rate-per-second", Double.class, defaultRate);
+        int burst = env.getProperty(prefix + ".burst", Integer.class, defaultBurst);
+        return rate <= 0 ? Bucket.UNLIMITED : new Bucket(rate, burst);
+    }
+
+    private static final class Bucket {
+        private static final Bucket UNLIMITED = new Bucket(0, 0);
+
+        // Nanoseconds between two tokens
+        private final long interval;
+        // How far ahead of the theoretical arrival time a call may be, burst - 1 intervals
+        private final long tolerance;
+        // Theoretical arrival time of the next call
+        private final AtomicLong nextArrival = new AtomicLong(Long.MIN_VALUE);
+
+        private Bucket(double ratePerSecond, int burst) {
+            this.interval = ratePerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+            this.tolerance = Math.max(0, burst - 1) * interval;
+        }
+
+        /**
+         * @param now Current time
+         * @param maxWait Longest acceptable wait
+         * @return How long to wait for the reserved token, or minus the time until a token is available if
+         * it is further away than the maximum wait, in which case nothing is reserved
+         */
+        long reserve(long now, long maxWait) {
+            if (interval == 0) {
+                return 0;
+            }
+            while (true) {
+                long current = nextArrival.get();
+                long arrival = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long wait = arrival - tolerance - now;
+                if (wait > maxWait) {
+                    return -wait;
+                }
+                if (nextArrival.compareAndSet(current, arrival + interval)) {
+                    return Math.max(0, wait);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.core.ApiConfig;
+import com.mastercard.api.core.exception.ApiException;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.core.security.oauth.OAuthAuthentication;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mastercard Send API calls made through the Mastercard SDK. Used unless sendapi.client selects another client.
+ * The SDK signs with the key read when its authentication is set, so the p12 file is checked for changes
+ * every signing.key.reload-check-millis and the authentication set again when it was modified.
+ * With sendapi.lazy-init the key is only read before the first call, or by {@link #warmUp()}.
+ * <p>
+ * The SDK authentication is global to the JVM, so this client only signs for the default partner of the
+ * {@link PartnerRegistry}: calls for the partner ID of another tenant fail with {@link #UNSUPPORTED_PARTNER}
+ * rather than swap the authentication under concurrent calls. Those tenants need sendapi.client=pooled.
+ */
+@Component
+@ConditionalOnProperty(name = "sendapi.client", havingValue = "sdk", matchIfMissing = true)
+public class SdkSendApiClient implements SendApiClient {
+    /** Reason code of calls for a partner this client can not sign for. **/
+    public static final String UNSUPPORTED_PARTNER = "UNSUPPORTED_PARTNER";
+    private static final Logger log = LoggerFactory.getLogger(SdkSendApiClient.class);
+
+    private final PartnerRegistry partners;
+
+    private final String consumerKey;
+    private final String keyAlias;
+    private final String keyPassword;
+    private final Path p12PrivateKey;
+    private final long checkIntervalNanos;
+    // Set once the SDK authentication has been set
+    private volatile boolean authenticated;
+    private volatile long keyModified;
+    private volatile long nextCheck;
+
+    /**
+     * Initiate SDK authentication, unless deferred to the first call by sendapi.lazy-init.
+     * @param env Environment from which property details are obtained
+     * @param diagnostics The SDK debug output is only enabled at the full diagnostics level
+     * @param partners Partners served, only the default one is signed for
+     * @throws IOException if the p12 file can not be read
+     */
+    @Autowired
+    public SdkSendApiClient(Environment env, Diagnostics diagnostics, PartnerRegistry partners) throws IOException {
+        PartnerProfile partner = partners.getDefault();
+        this.partners = partners;
+        this.consumerKey = partner.getConsumerKey();
+        this.keyAlias = partner.getKeyAlias();
+        this.keyPassword = partner.getKeyPassword();
+        this.p12PrivateKey = Paths.get(partner.getP12PrivateKey());
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(env.getProperty("signing.key.reload-check-millis", Long.class, 10000L));
+
+        if (!env.getProperty("sendapi.lazy-init", Boolean.class, false)) {
+            authenticate();
+        }
+        ApiConfig.setDebug(diagnostics.isFull());
+        ApiConfig.setSandbox(true);
+        if (partners.getPartners().size() > 1) {
+            log.warn("Only the default tenant is served by the SDK client, calls for other tenants need sendapi.client=pooled.");
+        }
+    }
+
+    /**
+     * Read the key and set it as the SDK authentication.
+     */
+    private void authenticate() throws IOException {
+        long modified = Files.getLastModifiedTime(p12PrivateKey).toMillis();
+        try (InputStream is = Files.newInputStream(p12PrivateKey)) {
+            ApiConfig.setAuthentication(new OAuthAuthentication(consumerKey, is, keyAlias, keyPassword));
+        }
+        keyModified = modified;
+        nextCheck = System.nanoTime() + checkIntervalNanos;
+        authenticated = true;
+    }
+
+    /**
+     * Check that the call is for the default partner, then prepare the SDK authentication.
+     * @param partnerId Partner ID the call is sent for
+     * @throws SendApiException if the partner is another tenant or no tenant, or the key can not be read for the first time
+     */
+    private void prepare(Object partnerId) throws SendApiException {
+        PartnerProfile partner;
+        try {
+            partner = partners.forPartnerId(partnerId == null ? null : partnerId.toString());
+        } catch (UnknownTenantException e) {
+            throw new SendApiException(400, e.getMessage(), PartnerRegistry.UNKNOWN_PARTNER, "local", e);
+        }
+        if (partner != partners.getDefault()) {
+            throw new SendApiException(400, "Tenant " + partner.getTenant() + " can not be served by the SDK client.",
+                    UNSUPPORTED_PARTNER, "local", null);
+        }
+        prepare();
+    }
+
+    /**
+     * Set the SDK authentication if not set yet, then reload the key if its file was modified.
+     * @throws SendApiException if the key can not be read for the first time
+     */
+    private void prepare() throws SendApiException {
+        if (!authenticated) {
+            synchronized (this) {
+                if (!authenticated) { // not set by another thread meanwhile
+                    try {
+                        authenticate();
+                    } catch (IOException | RuntimeException e) {
+                        throw new SendApiException(0, "Could not read the signing key from " + p12PrivateKey + ": "
+                                + e.getMessage(), "SIGNING_ERROR", "local", e);
+                    }
+                }
+            }
+        }
+        reloadKeyIfModified();
+    }
+
+    @Override
+    public void warmUp() throws SendApiException {
+        prepare();
+    }
+
+    private void reloadKeyIfModified() {
+        if (checkIntervalNanos <= 0 || System.nanoTime() - nextCheck < 0) {
+            return;
+        }
+        synchronized (this) {
+            if (System.nanoTime() - nextCheck < 0) {
+                return; // checked by another thread
+            }
+            nextCheck = System.nanoTime() + checkIntervalNanos;
+            try {
+                if (Files.getLastModifiedTime(p12PrivateKey).toMillis() != keyModified) {
+                    authenticate();
+                    log.info("Signing key reloaded from {}.", p12PrivateKey);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not reload the signing key from {}, previous key kept: {}", p12PrivateKey, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public AccountInfo readAccountInfo(RequestMap map) throws SendApiException {
+        prepare(map.get("partnerId"));
+        try {
+            return new AccountInfo(map).read(); // API call
+        } catch (ApiException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public PaymentTransfer createPaymentTransfer(RequestMap map) throws SendApiException {
+        prepare(map.get("partnerId"));
+        try {
+            return PaymentTransfer.create(map); // API call
+        } catch (ApiException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException {
+        prepare(partnerId);
+        RequestMap map = new RequestMap();
+        map.set("partnerId", partnerId);
+        try {
+            return PaymentTransfer.readByID(transferId, map); // API call
+        } catch (ApiException e) {
+            throw translate(e);
+        }
+    }
+
+    private static SendApiException translate(ApiException e) {
+        return new SendApiException(e.getHttpStatus(), e.getMessage(), e.getReasonCode(), e.getSource(), e);
+    }
+}
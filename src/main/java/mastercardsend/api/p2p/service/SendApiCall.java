@@ -0,0 +1,15 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * One Mastercard Send API call, run by {@link CircuitBreaker} and {@link HedgedReads}.
+ * @param <T> Type of the response
+ */
+@FunctionalInterface
+public interface SendApiCall<T> {
+
+    /**
+     * @return The response
+     * @throws SendApiException if the API call failed
+     */
+    T call() throws SendApiException;
+}
@@ -0,0 +1,44 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+
+/**
+ * Calls to the Mastercard Send API made by {@link MastercardService}.
+ * Implementations must be safe for concurrent use.
+ */
+public interface SendApiClient {
+
+    /**
+     * Read the recipient account information.
+     * @param map Request containing the partner ID and the account_info details
+     * @return The account information, including the receiving eligibility
+     * @throws SendApiException if the API call failed
+     */
+    AccountInfo readAccountInfo(RequestMap map) throws SendApiException;
+
+    /**
+     * Push a payment transfer.
+     * @param map Request containing the partner ID and the payment_transfer details
+     * @return The created payment transfer
+     * @throws SendApiException if the API call failed
+     */
+    PaymentTransfer createPaymentTransfer(RequestMap map) throws SendApiException;
+
+    /**
+     * Read a payment transfer, with its current status.
+     * @param partnerId Partner the transfer belongs to
+     * @param transferId Transfer ID assigned by the API when the transfer was created
+     * @return The payment transfer
+     * @throws SendApiException if the API call failed, with status 404 if there is no such transfer
+     */
+    PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException;
+
+    /**
+     * Prepare the client for its first call without calling the API, e.g. read the signing key.
+     * @throws SendApiException if the client can not be prepared
+     */
+    default void warmUp() throws SendApiException {
+    }
+}
@@ -0,0 +1,36 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Failed call to the Mastercard Send API.
+ */
+public class SendApiException extends Exception {
+    private final int httpStatus;
+    private final String reasonCode;
+    private final String source;
+
+    /**
+     * @param httpStatus HTTP status of the response, 0 when no response was received
+     * @param message Description of the error
+     * @param reasonCode Reason code returned by the API
+     * @param source Source of the error as returned by the API
+     * @param cause Underlying exception
+     */
+    public SendApiException(int httpStatus, String message, String reasonCode, String source, Throwable cause) {
+        super(message, cause);
+        this.httpStatus = httpStatus;
+        this.reasonCode = reasonCode;
+        this.source = source;
+    }
+
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public String getSource() {
+        return source;
+    }
+}
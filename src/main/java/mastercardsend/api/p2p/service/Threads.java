@@ -0,0 +1,33 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads of the executors making Mastercard Send API calls, platform or virtual depending on
+ * spring.threads.virtual.enabled, which also moves servlet request handling to virtual threads.
+ */
+public final class Threads {
+    private Threads() {
+    }
+
+    /**
+     * @param env Environment from which property details are obtained
+     * @return True if blocking work runs on virtual threads
+     */
+    public static boolean isVirtual(Environment env) {
+        return env.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+    }
+
+    /**
+     * @param prefix Thread name prefix, followed by a sequence number
+     * @param virtual True for virtual threads, false for daemon platform threads
+     * @return Factory of named threads
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(prefix, 1).factory()
+                : Thread.ofPlatform().name(prefix, 1).daemon(true).factory();
+    }
+}
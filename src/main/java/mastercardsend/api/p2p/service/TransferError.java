@@ -0,0 +1,64 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Structured error of a single eligibility check or payment transfer.
+ */
+public final class TransferError {
+    private final int httpStatus;
+    private final String message;
+    private final String reasonCode;
+    private final String source;
+
+    /**
+     * @param httpStatus HTTP status of the failed call, 0 when the call itself succeeded
+     * @param message Description of the error
+     * @param reasonCode Reason code returned by the API
+     * @param source Source of the error as returned by the API
+     */
+    public TransferError(int httpStatus, String message, String reasonCode, String source) {
+        this.httpStatus = httpStatus;
+        this.message = message;
+        this.reasonCode = reasonCode;
+        this.source = source;
+    }
+
+    /**
+     * Build the error of a failed API call.
+     * @param e Exception thrown by the call
+     * @return The corresponding error
+     */
+    public static TransferError from(SendApiException e) {
+        return new TransferError(e.getHttpStatus(), e.getMessage(), e.getReasonCode(), e.getSource());
+    }
+
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return The error in the format displayed on the page
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (httpStatus != 0) {
+            sb.append("HttpStatus: ").append(httpStatus).append('\n');
+        }
+        sb.append("Message: ").append(message)
+                .append("\nReason Code: ").append(reasonCode)
+                .append("\nSource: ").append(source);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Dedicated, bounded pool running the Mastercard Send API calls of the asynchronous endpoints,
+ * so that servlet threads are released while waiting for the API.
+ * With virtual threads enabled every transfer gets its own virtual thread instead, and
+ * async.virtual.max-in-flight bounds the transfers running at the same time.
+ */
+@Component
+public class TransferExecutor {
+    private final ExecutorService executor;
+    // Transfers allowed in flight on virtual threads, null on the platform thread pool
+    private final Semaphore inFlight;
+    // How long an asynchronous request may wait for its transfer
+    private final long timeoutMillis;
+
+    /**
+     * @param env Environment from which property details are obtained
+     */
+    @Autowired
+    public TransferExecutor(Environment env) {
+        int threads = env.getProperty("async.threads", Integer.class, 64);
+        int queueCapacity = env.getProperty("async.queue-capacity", Integer.class, 256);
+        this.timeoutMillis = env.getProperty("async.timeout-millis", Long.class, 30000L);
+
+        if (Threads.isVirtual(env)) {
+            this.executor = Executors.newThreadPerTaskExecutor(Threads.factory("transfer-", true));
+            this.inFlight = new Semaphore(env.getProperty("async.virtual.max-in-flight", Integer.class, 10000));
+        } else {
+            this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    Threads.factory("transfer-", false), new ThreadPoolExecutor.AbortPolicy());
+            this.inFlight = null;
+        }
+    }
+
+    /**
+     * Run a task on the pool.
+     * @param task Task making the API calls
+     * @return Future completed with the result of the task
+     * @throws RejectedExecutionException if all threads are busy and the queue is full,
+     * or the maximum number of transfers is in flight on virtual threads
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return run(() -> CompletableFuture.supplyAsync(task, executor));
+    }
+
+    /**
+     * Run a task on the pool that completes asynchronously, such as a transfer whose retries run after the task returns.
+     * On virtual threads the transfer stays in flight until the future returned by the task completes.
+     * @param task Task making the first API call, returning the future of the transfer
+     * @return Future completed with the result of the future returned by the task
+     * @throws RejectedExecutionException if all threads are busy and the queue is full,
+     * or the maximum number of transfers is in flight on virtual threads
+     */
+    public <T> CompletableFuture<T> submitAsync(Supplier<CompletableFuture<T>> task) {
+        return run(() -> CompletableFuture.supplyAsync(task, executor).thenCompose(future -> future));
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> start) {
+        if (inFlight == null) {
+            return start.get();
+        }
+        if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("Too many transfers in flight");
+        }
+        try {
+            CompletableFuture<T> future = start.get();
+            future.whenComplete((result, e) -> inFlight.release());
+            return future;
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,228 @@
+package mastercardsend.api.p2p.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import mastercardsend.api.p2p.model.AccountUri;
+import mastercardsend.api.p2p.model.CurrencyTable;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timers and gauges of the Mastercard Send API calls, published through Micrometer.
+ * Timers are tagged by payment type, currency, recipient URI scheme, outcome and reason code. Tag values come from the
+ * request and the API, so each tag is kept to a fixed set of values and anything else is published as "other":
+ * otherwise every distinct value sent by a client would register its own timer and grow the registry without bound.
+ * Percentile histograms are enabled by the management.metrics.distribution.percentiles-histogram.p2p property.
+ * The time from the JVM start to the first successful payment transfer is logged and published as p2p.startup.first-transfer,
+ * the cold start cost of an instance added on a burst.
+ */
+@Component
+public class TransferMetrics {
+    private static final Logger log = LoggerFactory.getLogger(TransferMetrics.class);
+
+    public static final String ELIGIBILITY = "p2p.eligibility";
+    public static final String CREATE = "p2p.transfer.create";
+    public static final String IN_FLIGHT = "p2p.inflight";
+    // Tag value of anything outside the known values of a tag
+    static final String OTHER = "other";
+
+    private static final Set<String> PAYMENT_TYPES = Set.of(MastercardService.PERSON_TO_PERSON,
+            MastercardService.ACCOUNT_TO_ACCOUNT, MastercardService.CREDIT_CARD_BILLPAYMENT);
+    // Reason codes raised locally, and the ones of the Send API error responses
+    private static final Set<String> REASON_CODES = Set.of(MastercardService.INVALID_ACCOUNT_URI,
+            MastercardService.INVALID_AMOUNT, MastercardService.INVALID_CURRENCY, MastercardService.RATE_LIMITED,
+            MastercardService.INTERNAL_ERROR, CircuitBreaker.REASON_CODE,
+            PartnerRegistry.UNKNOWN_PARTNER, SdkSendApiClient.UNSUPPORTED_PARTNER, "TIMEOUT", "CONNECTION_ERROR",
+            "SIGNING_ERROR", "INVALID_INPUT_FORMAT", "INVALID_INPUT_VALUE", "INVALID_INPUT_LENGTH", "MISSING_REQUIRED_INPUT",
+            "DUPLICATE_VALUE", "RESOURCE_NOT_FOUND", "SYSTEM_ERROR", "DECLINE", "ACCOUNT_NOT_ELIGIBLE");
+
+    private final MeterRegistry registry;
+    private final AtomicInteger eligibilityInFlight = new AtomicInteger();
+    private final AtomicInteger createInFlight = new AtomicInteger();
+    // Milliseconds from the JVM start to the first successful transfer, 0 until then
+    private final AtomicLong firstTransferMillis = new AtomicLong();
+
+    /**
+     * @param registry Registry the meters are published to
+     */
+    @Autowired
+    public TransferMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder(IN_FLIGHT, eligibilityInFlight, AtomicInteger::get)
+                .tag("call", "eligibility")
+                .description("AccountInfo calls in flight")
+                .register(registry);
+        Gauge.builder(IN_FLIGHT, createInFlight, AtomicInteger::get)
+                .tag("call", "create")
+                .description("PaymentTransfer calls in flight")
+                .register(registry);
+        Gauge.builder("p2p.startup.first-transfer", firstTransferMillis, AtomicLong::get)
+                .description("Time from the JVM start to the first successful payment transfer, 0 until then")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    /**
+     * Publish the counters of the eligibility cache.
+     * @param cache Cache in front of the eligibility check
+     */
+    public void bind(EligibilityCache cache) {
+        FunctionCounter.builder("p2p.eligibility.cache.hits", cache, EligibilityCache::getHits).register(registry);
+        FunctionCounter.builder("p2p.eligibility.cache.misses", cache, EligibilityCache::getMisses).register(registry);
+        FunctionCounter.builder("p2p.eligibility.cache.evictions", cache, EligibilityCache::getEvictions).register(registry);
+        Gauge.builder("p2p.eligibility.cache.size", cache, EligibilityCache::size).register(registry);
+    }
+
+    /**
+     * Publish the counters of the transfer status cache.
+     * @param cache Cache of payment transfers by ID
+     */
+    public void bind(TransferStatusCache cache) {
+        FunctionCounter.builder("p2p.status.cache.hits", cache, TransferStatusCache::getHits).register(registry);
+        FunctionCounter.builder("p2p.status.cache.misses", cache, TransferStatusCache::getMisses).register(registry);
+        Gauge.builder("p2p.status.cache.size", cache, TransferStatusCache::size).register(registry);
+    }
+
+    /**
+     * Publish the counters of the idempotency store.
+     * @param store Store of client transfer references
+     */
+    public void bind(IdempotencyStore store) {
+        FunctionCounter.builder("p2p.idempotency.replays", store, IdempotencyStore::getReplays).register(registry);
+        Gauge.builder("p2p.idempotency.size", store, IdempotencyStore::size).register(registry);
+    }
+
+    /**
+     * Publish the state of the circuit breaker, 0 closed, 1 open, 2 half open, and the calls it failed fast.
+     * @param circuitBreaker Circuit breaker in front of the API calls
+     */
+    public void bind(CircuitBreaker circuitBreaker) {
+        Gauge.builder("p2p.circuitbreaker.state", circuitBreaker, breaker -> breaker.getState().ordinal()).register(registry);
+        FunctionCounter.builder("p2p.circuitbreaker.rejected", circuitBreaker, CircuitBreaker::getRejected).register(registry);
+    }
+
+    /**
+     * Publish the hedged AccountInfo calls and the current hedging delay.
+     * @param hedgedReads Hedging of the AccountInfo calls
+     */
+    public void bind(HedgedReads hedgedReads) {
+        FunctionCounter.builder("p2p.hedge.sent", hedgedReads, HedgedReads::getHedges).register(registry);
+        FunctionCounter.builder("p2p.hedge.wins", hedgedReads, HedgedReads::getHedgeWins).register(registry);
+        Gauge.builder("p2p.hedge.delay", hedgedReads, HedgedReads::getDelayMillis).baseUnit("milliseconds").register(registry);
+    }
+
+    /**
+     * Publish the retries of failed payment transfers: scheduled, waiting for their backoff, and given up.
+     * @param retries Retries of failed payment transfers
+     */
+    public void bind(TransferRetries retries) {
+        FunctionCounter.builder("p2p.retry.scheduled", retries, TransferRetries::getRetries).register(registry);
+        FunctionCounter.builder("p2p.retry.exhausted", retries, TransferRetries::getExhausted).register(registry);
+        Gauge.builder("p2p.retry.pending", retries, TransferRetries::getPending).register(registry);
+    }
+
+    /**
+     * Publish the admission of each lane: transfers admitted, rejected on arrival, shed while waiting,
+     * waiting and holding a slot.
+     * @param admission Scheduler in front of the transfers
+     */
+    public void bind(AdmissionScheduler admission) {
+        for (AdmissionScheduler.Lane lane : AdmissionScheduler.Lane.values()) {
+            String name = lane.name().toLowerCase(Locale.ROOT);
+            FunctionCounter.builder("p2p.admission.admitted", admission, scheduler -> scheduler.getAdmitted(lane)).tag("lane", name).register(registry);
+            FunctionCounter.builder("p2p.admission.rejected", admission, scheduler -> scheduler.getRejected(lane)).tag("lane", name).register(registry);
+            FunctionCounter.builder("p2p.admission.shed", admission, scheduler -> scheduler.getShed(lane)).tag("lane", name).register(registry);
+            Gauge.builder("p2p.admission.waiting", admission, scheduler -> scheduler.getWaiting(lane)).tag("lane", name).register(registry);
+            Gauge.builder("p2p.admission.in-flight", admission, scheduler -> scheduler.getInFlight(lane)).tag("lane", name).register(registry);
+        }
+    }
+
+    /**
+     * Publish the connections of the pooled transport: leased, available, requests waiting for one, and the maximum.
+     * @param pool Connection pool of the pooled transport
+     */
+    public void bind(PoolingHttpClientConnectionManager pool) {
+        Gauge.builder("p2p.http.pool.leased", pool, manager -> manager.getTotalStats().getLeased()).register(registry);
+        Gauge.builder("p2p.http.pool.available", pool, manager -> manager.getTotalStats().getAvailable()).register(registry);
+        Gauge.builder("p2p.http.pool.pending", pool, manager -> manager.getTotalStats().getPending()).register(registry);
+        Gauge.builder("p2p.http.pool.max", pool, manager -> manager.getTotalStats().getMax()).register(registry);
+    }
+
+    public Timer.Sample startEligibility() {
+        eligibilityInFlight.incrementAndGet();
+        return Timer.start(registry);
+    }
+
+    public void stopEligibility(Timer.Sample sample, MastercardSendPaymentTransfer paymentTransfer, Eligibility eligibility) {
+        eligibilityInFlight.decrementAndGet();
+        String outcome = eligibility.isEligible() ? "eligible" : eligibility.isCacheable() ? "ineligible" : "error";
+        sample.stop(registry.timer(ELIGIBILITY, tags(paymentTransfer, outcome, eligibility.getError())));
+    }
+
+    public Timer.Sample startCreate() {
+        createInFlight.incrementAndGet();
+        return Timer.start(registry);
+    }
+
+    public void stopCreate(Timer.Sample sample, MastercardSendPaymentTransfer paymentTransfer, TransferOutcome outcome) {
+        createInFlight.decrementAndGet();
+        sample.stop(registry.timer(CREATE, tags(paymentTransfer, outcome.isSuccess() ? "success" : "failed", outcome.getError())));
+        if (outcome.isSuccess() && firstTransferMillis.get() == 0) {
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            if (firstTransferMillis.compareAndSet(0, Math.max(1, uptime))) {
+                log.info("First successful payment transfer {} ms after the JVM started", uptime);
+            }
+        }
+    }
+
+    static Tags tags(MastercardSendPaymentTransfer paymentTransfer, String outcome, TransferError error) {
+        return Tags.of(
+                "payment_type", known(paymentTransfer.getPaymentType(), PAYMENT_TYPES),
+                "currency", currency(paymentTransfer.getCurrency()),
+                "uri_scheme", uriScheme(paymentTransfer.getRecipientAccountUri()),
+                "outcome", outcome,
+                "reason_code", error == null ? "none" : known(error.getReasonCode(), REASON_CODES));
+    }
+
+    /**
+     * @return The ISO 4217 code of the currency, "other" for anything else
+     */
+    private static String currency(String code) {
+        if (code == null) {
+            return "none";
+        }
+        return CurrencyTable.exponent(code) >= 0 ? code : OTHER;
+    }
+
+    /**
+     * @return The value sent to the API of the scheme of the URI, "other" for a scheme that is not an {@link AccountUri.Scheme}
+     */
+    private static String uriScheme(String accountUri) {
+        int colon = accountUri == null ? -1 : accountUri.indexOf(':');
+        if (colon < 0) {
+            return "unknown";
+        }
+        AccountUri.Scheme scheme = AccountUri.Scheme.fromValue(accountUri.substring(0, colon));
+        return scheme == null ? OTHER : scheme.getValue();
+    }
+
+    private static String known(String tag, Set<String> values) {
+        if (tag == null) {
+            return "none";
+        }
+        return values.contains(tag) ? tag : OTHER;
+    }
+}
@@ -0,0 +1,77 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.PaymentTransfer;
+
+/**
+ * Immutable outcome of a single payment transfer call: either the response or the error,
+ * together with the request that was sent.
+ * The request and response are only rendered to JSON the first time they are asked for.
+ */
+public final class TransferOutcome {
+    private final RequestMap request;
+    private final PaymentTransfer response;
+    private final TransferError error;
+    // Rendered on demand
+    private volatile String requestJson;
+    private volatile String responseJson;
+
+    private TransferOutcome(RequestMap request, PaymentTransfer response, TransferError error) {
+        this.request = request;
+        this.response = response;
+        this.error = error;
+    }
+
+    public static TransferOutcome success(RequestMap request, PaymentTransfer response) {
+        return new TransferOutcome(request, response, null);
+    }
+
+    public static TransferOutcome failure(RequestMap request, TransferError error) {
+        return new TransferOutcome(request, null, error);
+    }
+
+    public boolean isSuccess() {
+        return response != null;
+    }
+
+    /**
+     * @return The request payload as JSON, null if no request was built
+     */
+    public String getRequest() {
+        if (requestJson == null && request != null) {
+            requestJson = Diagnostics.render(request);
+        }
+        return requestJson;
+    }
+
+    /**
+     * @return The request payload sent to the API, null if no request was built
+     */
+    public RequestMap getRequestMap() {
+        return request;
+    }
+
+    /**
+     * @return The created payment transfer, null if failed
+     */
+    public PaymentTransfer getResponse() {
+        return response;
+    }
+
+    /**
+     * @return The created payment transfer as JSON, null if failed
+     */
+    public String getResponseJson() {
+        if (responseJson == null && response != null) {
+            responseJson = Diagnostics.render(response);
+        }
+        return responseJson;
+    }
+
+    /**
+     * @return The error, null if successful
+     */
+    public TransferError getError() {
+        return error;
+    }
+}
@@ -0,0 +1,242 @@
+package mastercardsend.api.p2p.service;
+
+import org.springframework.core.env.Environment;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Retries of payment transfers that failed transiently, with no response or a 5xx other than an open circuit breaker.
+ * The first attempt runs on the calling thread; a retry is a task in the delay queue of a single scheduler thread,
+ * handed to a worker when due, so no thread sleeps through the backoff and the caller gets a future of the final outcome.
+ * The same transfer reference is sent on every attempt, so the API rejects a transfer it already processed.
+ * <p>
+ * Attempts are bounded by retry.create.max-attempts (1 disables retries). The delay before attempt n is drawn
+ * uniformly between 0 and initial-backoff-millis * multiplier^(n-2), capped at max-backoff-millis (full jitter),
+ * so clients failing together do not retry together. Each of these can be overridden per reason code with
+ * retry.create.reason-codes.{reasonCode}.max-attempts, .initial-backoff-millis and .max-backoff-millis;
+ * a reason code with its own max-attempts is retried whatever the HTTP status.
+ * Failures that would fail the same way again, such as a request that can not be signed or written, are never retried,
+ * whatever the properties. On {@link #shutdown()} the retries still waiting for their backoff are not sent: their
+ * futures complete with the outcome of the last attempt.
+ */
+public class TransferRetries {
+    private static final String PREFIX = "retry.create.";
+    // Reason codes of permanent failures, reported with no HTTP status when raised before the call is sent
+    private static final Set<String> NON_RETRYABLE = Set.of("SIGNING_ERROR", "INVALID_INPUT_FORMAT",
+            MastercardService.INVALID_ACCOUNT_URI, MastercardService.INVALID_AMOUNT, MastercardService.INVALID_CURRENCY,
+            PartnerRegistry.UNKNOWN_PARTNER, SdkSendApiClient.UNSUPPORTED_PARTNER);
+
+    private final Environment env;
+    private final Policy defaultPolicy;
+    private final ConcurrentMap<String, Policy> policies = new ConcurrentHashMap<>();
+    // Holds the pending retries until they are due, then hands them to the workers
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ExecutorService workers;
+    // Outcome of the last attempt of each transfer waiting for its backoff, by the future of its final outcome
+    private final ConcurrentMap<CompletableFuture<TransferOutcome>, TransferOutcome> waiting = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param env Environment from which property details are obtained
+     */
+    public TransferRetries(Environment env) {
+        this.env = env;
+        this.defaultPolicy = new Policy(
+                env.getProperty(PREFIX + "max-attempts", Integer.class, 1),
+                env.getProperty(PREFIX + "initial-backoff-millis", Long.class, 200L),
+                env.getProperty(PREFIX + "max-backoff-millis", Long.class, 5000L),
+                env.getProperty(PREFIX + "multiplier", Double.class, 2.0), false);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, Threads.factory("transfer-retry-scheduler-", false));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        if (Threads.isVirtual(env)) {
+            this.workers = Executors.newThreadPerTaskExecutor(Threads.factory("transfer-retry-", true));
+        } else {
+            int threads = env.getProperty("retry.threads", Integer.class, 16);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), Threads.factory("transfer-retry-", false));
+            pool.allowCoreThreadTimeOut(true);
+            this.workers = pool;
+        }
+    }
+
+    /**
+     * Make the first attempt of a transfer and schedule its retries.
+     * @param attempt Sends the transfer once, always with the same transfer reference
+     * @return Future completed with the first successful or non-retryable outcome, or the last one once the attempts
+     * are used up; already completed unless the first attempt is retried
+     * @throws RateLimitExceededException if the first attempt exceeded the partner budget; later attempts that exceed
+     * it end the retries with the previous outcome
+     */
+    public CompletableFuture<TransferOutcome> call(Supplier<TransferOutcome> attempt) {
+        TransferOutcome outcome = attempt.get();
+        if (policy(outcome).maxAttempts <= 1) {
+            return CompletableFuture.completedFuture(outcome);
+        }
+        CompletableFuture<TransferOutcome> result = new CompletableFuture<>();
+        schedule(attempt, outcome, 2, result);
+        return result;
+    }
+
+    private void schedule(Supplier<TransferOutcome> attempt, TransferOutcome last, int number,
+                          CompletableFuture<TransferOutcome> result) {
+        Policy policy = policy(last);
+        retries.increment();
+        waiting.put(result, last);
+        try {
+            scheduler.schedule(() -> {
+                waiting.remove(result);
+                try {
+                    workers.execute(() -> retry(attempt, last, number, result));
+                } catch (RejectedExecutionException e) {
+                    result.complete(last);
+                }
+            }, policy.backoffNanos(number), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            waiting.remove(result);
+            result.complete(last);
+        }
+    }
+
+    private void retry(Supplier<TransferOutcome> attempt, TransferOutcome last, int number,
+                       CompletableFuture<TransferOutcome> result) {
+        TransferOutcome outcome;
+        try {
+            outcome = attempt.get();
+        } catch (RateLimitExceededException e) { // the budget is spent, give up rather than queue more calls
+            result.complete(last);
+            return;
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        int maxAttempts = policy(outcome).maxAttempts;
+        if (number < maxAttempts) {
+            schedule(attempt, outcome, number + 1, result);
+            return;
+        }
+        if (maxAttempts > 1 && !outcome.isSuccess()) {
+            exhausted.increment();
+        }
+        result.complete(outcome);
+    }
+
+    /**
+     * @param outcome Outcome of an attempt
+     * @return True if the outcome is a failure these retries send again, when their attempts allow it
+     */
+    public boolean isRetryable(TransferOutcome outcome) {
+        return policy(outcome) != Policy.NONE;
+    }
+
+    /**
+     * @return Policy of the outcome, no retries for successes, permanent failures and failures that are neither
+     * configured nor transient
+     */
+    private Policy policy(TransferOutcome outcome) {
+        if (outcome.isSuccess() || NON_RETRYABLE.contains(outcome.getError().getReasonCode())) {
+            return Policy.NONE;
+        }
+        TransferError error = outcome.getError();
+        Policy policy = error.getReasonCode() == null ? defaultPolicy
+                : policies.computeIfAbsent(error.getReasonCode(), this::reasonCodePolicy);
+        if (policy.anyStatus) {
+            return policy;
+        }
+        // calls failed fast by the open circuit breaker are not retried unless their reason code is configured
+        int status = error.getHttpStatus();
+        boolean transientFailure = (status == 0 || status >= 500) && !CircuitBreaker.REASON_CODE.equals(error.getReasonCode());
+        return transientFailure ? policy : Policy.NONE;
+    }
+
+    private Policy reasonCodePolicy(String reasonCode) {
+        String prefix = PREFIX + "reason-codes." + reasonCode + '.';
+        Integer maxAttempts = env.getProperty(prefix + "max-attempts", Integer.class);
+        Long initialBackoffMillis = env.getProperty(prefix + "initial-backoff-millis", Long.class);
+        Long maxBackoffMillis = env.getProperty(prefix + "max-backoff-millis", Long.class);
+        if (maxAttempts == null && initialBackoffMillis == null && maxBackoffMillis == null) {
+            return defaultPolicy;
+        }
+        return new Policy(maxAttempts != null ? maxAttempts : defaultPolicy.maxAttempts,
+                initialBackoffMillis != null ? initialBackoffMillis : defaultPolicy.initialBackoffMillis,
+                maxBackoffMillis != null ? maxBackoffMillis : defaultPolicy.maxBackoffMillis,
+                defaultPolicy.multiplier, maxAttempts != null);
+    }
+
+    /**
+     * Stop scheduling retries. Retries waiting for their backoff are dropped and complete with the outcome of their
+     * last attempt; attempts already running finish, without scheduling another.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        for (CompletableFuture<TransferOutcome> result : waiting.keySet()) {
+            TransferOutcome last = waiting.remove(result);
+            if (last != null) {
+                result.complete(last);
+            }
+        }
+    }
+
+    /**
+     * @return Number of retries scheduled
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return Number of transfers still failing after their last attempt
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * @return Number of retries waiting for their backoff to elapse
+     */
+    public int getPending() {
+        return scheduler.getQueue().size();
+    }
+
+    private static final class Policy {
+        private static final Policy NONE = new Policy(1, 0, 0, 1, false);
+
+        private final int maxAttempts;
+        private final long initialBackoffMillis;
+        private final long maxBackoffMillis;
+        private final double multiplier;
+        // True if the attempts of a reason code are configured, which then applies whatever the HTTP status
+        private final boolean anyStatus;
+
+        private Policy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double multiplier, boolean anyStatus) {
+            this.maxAttempts = maxAttempts;
+            this.initialBackoffMillis = initialBackoffMillis;
+            this.maxBackoffMillis = maxBackoffMillis;
+            this.multiplier = multiplier;
+            this.anyStatus = anyStatus;
+        }
+
+        /**
+         * @param number Attempt about to be scheduled, 2 for the first retry
+         * @return Delay before the attempt, with full jitter
+         */
+        private long backoffNanos(int number) {
+            double ceiling = Math.min(maxBackoffMillis, initialBackoffMillis * Math.pow(multiplier, number - 2));
+            return (long) (ThreadLocalRandom.current().nextDouble() * TimeUnit.MILLISECONDS.toNanos((long) ceiling));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.p2p.PaymentTransfer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache of payment transfers by transfer ID, filled with the responses of the transfers created
+ * by this instance and with the transfers read from the API on a miss. Transfers in a final status are kept for the
+ * final TTL and pending ones for the pending TTL, the least recently used entry is evicted once the cache is full,
+ * and concurrent misses on the same transfer share a single upstream read.
+ * Transfer references of the cached transfers are indexed to their ID.
+ */
+public class TransferStatusCache {
+    /** Status of a transfer still being processed, which may change. **/
+    public static final String PENDING = "PENDING";
+
+    private final int maximumSize;
+    private final long finalTtlNanos;
+    private final long pendingTtlNanos;
+    // Access ordered so that the eldest entry is the least recently used one, both guarded by entries
+    private final Map<String, Entry> entries;
+    private final Map<String, String> idsByReference;
+    // Upstream reads currently in flight, by key
+    private final ConcurrentMap<String, CompletableFuture<PaymentTransfer>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maximumSize Maximum number of cached transfers, 0 disables caching
+     * @param finalTtlSeconds How long a transfer in a final status is kept
+     * @param pendingTtlSeconds How long a pending transfer is kept
+     */
+    public TransferStatusCache(int maximumSize, long finalTtlSeconds, long pendingTtlSeconds) {
+        this.maximumSize = maximumSize;
+        this.finalTtlNanos = TimeUnit.SECONDS.toNanos(finalTtlSeconds);
+        this.pendingTtlNanos = TimeUnit.SECONDS.toNanos(pendingTtlSeconds);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TransferStatusCache.this.maximumSize;
+            }
+        };
+        this.idsByReference = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > TransferStatusCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Return the cached transfer, or read it when absent or expired.
+     * Only one read runs per transfer at a time, other callers wait for its result.
+     * @param partnerId Partner the transfer belongs to
+     * @param transferId Transfer ID assigned by the API
+     * @param read Upstream read of the transfer
+     * @return The payment transfer
+     * @throws SendApiException if the upstream read failed
+     */
+    public PaymentTransfer get(String partnerId, String transferId, SendApiCall<PaymentTransfer> read) throws SendApiException {
+        String key = partnerId + ':' + transferId;
+        PaymentTransfer cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        CompletableFuture<PaymentTransfer> load = new CompletableFuture<>();
+        CompletableFuture<PaymentTransfer> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SendApiException) {
+                    throw (SendApiException) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            PaymentTransfer transfer = read.call();
+            put(partnerId, transfer);
+            load.complete(transfer);
+            return transfer;
+        } catch (SendApiException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Cache a transfer and index its reference.
+     * @param partnerId Partner the transfer belongs to
+     * @param transfer Payment transfer as returned by the API
+     */
+    public void put(String partnerId, PaymentTransfer transfer) {
+        Object id = transfer.get("payment_transfer.id");
+        if (maximumSize <= 0 || id == null) {
+            return;
+        }
+        Object reference = transfer.get("payment_transfer.transfer_reference");
+        long ttl = PENDING.equals(transfer.get("payment_transfer.status")) ? pendingTtlNanos : finalTtlNanos;
+        synchronized (entries) {
+            entries.put(partnerId + ':' + id, new Entry(transfer, System.nanoTime() + ttl));
+            if (reference != null) {
+                idsByReference.put(partnerId + ':' + reference, id.toString());
+            }
+        }
+    }
+
+    /**
+     * @param partnerId Partner the transfer belongs to
+     * @param transferReference Transfer reference sent with the transfer
+     * @return The ID of the transfer, null unless a transfer with this reference was cached
+     */
+    public String getTransferId(String partnerId, String transferReference) {
+        synchronized (entries) {
+            return idsByReference.get(partnerId + ':' + transferReference);
+        }
+    }
+
+    private PaymentTransfer lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.transfer;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        private final PaymentTransfer transfer;
+        private final long expiresAt;
+
+        private Entry(PaymentTransfer transfer, long expiresAt) {
+            this.transfer = transfer;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package mastercardsend.api.p2p.service;
+
+/**
+ * Thrown when a request selects a tenant that is not configured in the {@link PartnerRegistry}.
+ */
+public class UnknownTenantException extends RuntimeException {
+    private final String tenant;
+
+    /**
+     * @param tenant Tenant named by the request
+     */
+    public UnknownTenantException(String tenant) {
+        this(tenant, "Unknown tenant " + tenant);
+    }
+
+    /**
+     * @param tenant Tenant or partner ID named by the request
+     * @param message Description of what was not found
+     */
+    public UnknownTenantException(String tenant, String message) {
+        super(message);
+        this.tenant = tenant;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+}
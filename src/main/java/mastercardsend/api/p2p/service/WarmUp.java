@@ -0,0 +1,77 @@
+package mastercardsend.api.p2p.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mastercardsend.api.p2p.model.AccountUri;
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares the transfer path before the application reports itself ready to take traffic, when warmup.enabled is set:
+ * the client reads its signing key (see sendapi.lazy-init), and the JSON binding and local account URI checks of a
+ * sample transfer run warmup.iterations times so that their classes are loaded and their code compiled.
+ * No API call is made. Runners complete before the readiness state changes to ACCEPTING_TRAFFIC, so a load balancer
+ * following /actuator/health/readiness only sends transfers once the warm-up is done.
+ */
+@Component
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+public class WarmUp implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    private final SendApiClient client;
+    private final ObjectMapper mapper;
+    private final int iterations;
+
+    /**
+     * @param client Client making the Mastercard Send API calls
+     * @param mapper Jackson mapper binding the request bodies
+     * @param env Environment from which property details are obtained
+     */
+    @Autowired
+    public WarmUp(SendApiClient client, ObjectMapper mapper, Environment env) {
+        this.client = client;
+        this.mapper = mapper;
+        this.iterations = env.getProperty("warmup.iterations", Integer.class, 1000);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        long start = System.nanoTime();
+        try {
+            client.warmUp();
+        } catch (SendApiException e) { // the first transfers will fail the same way, starting is still useful
+            log.warn("Warm-up could not prepare the API client: {}", e.getMessage());
+        }
+        MastercardSendPaymentTransfer sample = sample();
+        byte[] json = mapper.writeValueAsBytes(sample);
+        for (int i = 0; i < iterations; i++) {
+            MastercardSendPaymentTransfer paymentTransfer = mapper.readValue(json, MastercardSendPaymentTransfer.class);
+            AccountUri.parse(paymentTransfer.getRecipientAccountUri()).validate();
+            json = mapper.writeValueAsBytes(paymentTransfer);
+        }
+        log.info("Warm-up completed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static MastercardSendPaymentTransfer sample() {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+        paymentTransfer.setPartnerId("warm-up");
+        paymentTransfer.setTransferReference("warm-up");
+        paymentTransfer.setFundingSource("credit");
+        paymentTransfer.setAmount(Amount.valueOf("44"));
+        paymentTransfer.setCurrency("USD");
+        paymentTransfer.setRecipientAccountUri(AccountUri.of(AccountUri.Scheme.PAN, "5509670000000187", "2099", "08", "123").toString());
+        paymentTransfer.setRecipientFirstName("John");
+        paymentTransfer.setRecipientLastName("Smith");
+        return paymentTransfer;
+    }
+}
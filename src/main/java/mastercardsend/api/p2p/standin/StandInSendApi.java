@@ -0,0 +1,208 @@
+package mastercardsend.api.p2p.standin;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+import mastercardsend.api.p2p.service.SendApiClient;
+import mastercardsend.api.p2p.service.SendApiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for the Mastercard Send PaymentTransfer and AccountInfo endpoints, for load tests and
+ * offline runs. Answers from response fixtures after a configurable latency and injects errors at
+ * configurable rates. Used in-process when sendapi.client=standin, or over HTTP through {@link StandInServer}.
+ * The last standin.transfers.maximum-size transfers created can be read back by ID.
+ */
+@Component
+@ConditionalOnProperty(name = "sendapi.client", havingValue = "standin")
+public class StandInSendApi implements SendApiClient {
+    // 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final byte[] paymentTransferFixture;
+    private final byte[] accountInfoFixture;
+    private final String distribution;
+    private final double medianMillis;
+    private final double p99Millis;
+    private final long timeoutMillis;
+    private final double serverErrorRate;
+    private final double timeoutRate;
+    private final double ineligibleRate;
+    // Recipient identifiers which are never eligible
+    private final List<String> ineligibleAccounts;
+    // Created transfers by partner ID and transfer ID, the eldest evicted first, guarded by itself
+    private final Map<String, PaymentTransfer> transfers;
+
+    /**
+     * @param properties Environment from which the standin.* properties are obtained
+     */
+    @Autowired
+    public StandInSendApi(Environment properties) {
+        DefaultResourceLoader resources = new DefaultResourceLoader();
+        paymentTransferFixture = read(resources.getResource(
+                properties.getProperty("standin.fixtures.payment-transfer", "classpath:standin/payment-transfer.json")));
+        accountInfoFixture = read(resources.getResource(
+                properties.getProperty("standin.fixtures.account-info", "classpath:standin/account-info.json")));
+        distribution = properties.getProperty("standin.latency.distribution", "lognormal");
+        medianMillis = properties.getProperty("standin.latency.median-millis", Double.class, 80.0);
+        p99Millis = properties.getProperty("standin.latency.p99-millis", Double.class, 400.0);
+        timeoutMillis = properties.getProperty("standin.timeout-millis", Long.class, 30000L);
+        serverErrorRate = properties.getProperty("standin.error-rate.server-error", Double.class, 0.0);
+        timeoutRate = properties.getProperty("standin.error-rate.timeout", Double.class, 0.0);
+        ineligibleRate = properties.getProperty("standin.error-rate.ineligible", Double.class, 0.0);
+        ineligibleAccounts = Arrays.asList(properties.getProperty("standin.ineligible-accounts", "5432123456789012").split(","));
+        int maximumTransfers = properties.getProperty("standin.transfers.maximum-size", Integer.class, 100000);
+        transfers = new LinkedHashMap<String, PaymentTransfer>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PaymentTransfer> eldest) {
+                return size() > maximumTransfers;
+            }
+        };
+    }
+
+    private static byte[] read(Resource resource) {
+        try (InputStream is = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(is);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read stand-in fixture " + resource, e);
+        }
+    }
+
+    @Override
+    public AccountInfo readAccountInfo(RequestMap map) throws SendApiException {
+        simulateCall();
+        RequestMap response = fixture(accountInfoFixture);
+        String accountUri = (String) map.get("account_info.account_uri");
+        if (isIneligible(accountUri)) {
+            response.set("account_info.receiving_eligibility.eligible", false);
+            response.set("account_info.receiving_eligibility.reason_code", "ACCOUNT_NOT_ELIGIBLE");
+            response.set("account_info.receiving_eligibility.reason_description", "Recipient account is not eligible to receive funds.");
+        }
+        response.set("account_info.receiving_eligibility.currency.alpha_currency_code", map.get("account_info.currency"));
+        return new AccountInfo(response);
+    }
+
+    @Override
+    public PaymentTransfer createPaymentTransfer(RequestMap map) throws SendApiException {
+        simulateCall();
+        RequestMap response = fixture(paymentTransferFixture);
+        String amount = (String) map.get("payment_transfer.amount");
+        String currency = (String) map.get("payment_transfer.currency");
+        response.set("payment_transfer.id", "trn_" + UUID.randomUUID());
+        response.set("payment_transfer.transfer_reference", map.get("payment_transfer.transfer_reference"));
+        response.set("payment_transfer.payment_type", map.get("payment_transfer.payment_type"));
+        response.set("payment_transfer.funding_source", map.get("payment_transfer.funding_source"));
+        response.set("payment_transfer.amount", amount);
+        response.set("payment_transfer.currency", currency);
+        response.set("payment_transfer.created", Instant.now().toString());
+        PaymentTransfer transfer = new PaymentTransfer(response);
+        synchronized (transfers) {
+            transfers.put(map.get("partnerId") + ":" + response.get("payment_transfer.id"), transfer);
+        }
+        return transfer;
+    }
+
+    @Override
+    public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException {
+        simulateCall();
+        PaymentTransfer transfer;
+        synchronized (transfers) {
+            transfer = transfers.get(partnerId + ":" + transferId);
+        }
+        if (transfer == null) {
+            throw new SendApiException(404, "Payment transfer " + transferId + " not found.", "RESOURCE_NOT_FOUND", "StandIn", null);
+        }
+        return transfer;
+    }
+
+    private boolean isIneligible(String accountUri) {
+        if (accountUri != null) {
+            for (String account : ineligibleAccounts) {
+                if (!account.isEmpty() && accountUri.contains(account.trim())) {
+                    return true;
+                }
+            }
+        }
+        return ThreadLocalRandom.current().nextDouble() < ineligibleRate;
+    }
+
+    /**
+     * Wait for the sampled latency, then fail with the injected error rates.
+     * @throws SendApiException for injected server errors and timeouts
+     */
+    private void simulateCall() throws SendApiException {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < timeoutRate) {
+            sleep(timeoutMillis);
+            throw new SendApiException(0, "Read timed out", "TIMEOUT", "StandIn", null);
+        }
+        sleep(Math.round(sampleLatencyMillis()));
+        if (draw < timeoutRate + serverErrorRate) {
+            throw new SendApiException(503, "Service temporarily unavailable", "SYSTEM_ERROR", "StandIn", null);
+        }
+    }
+
+    /**
+     * @return A latency drawn from the configured distribution: fixed (median), uniform (0 to twice the median)
+     * or lognormal (fitted to the median and 99th percentile)
+     */
+    double sampleLatencyMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (medianMillis <= 0) {
+            return 0;
+        }
+        switch (distribution) {
+            case "fixed":
+                return medianMillis;
+            case "uniform":
+                return random.nextDouble(2 * medianMillis);
+            case "lognormal":
+            default:
+                double mu = Math.log(medianMillis);
+                double sigma = Math.max(0, (Math.log(p99Millis) - mu) / Z_99);
+                return Math.exp(mu + sigma * random.nextGaussian());
+        }
+    }
+
+    private RequestMap fixture(byte[] json) {
+        try {
+            RequestMap map = new RequestMap();
+            map.putAll(mapper.readValue(json, MAP_TYPE));
+            return map;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid stand-in fixture.", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package mastercardsend.api.p2p.standin;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.api.core.model.RequestMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mastercardsend.api.p2p.service.SendApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link StandInSendApi} over HTTP, so it can run standalone or embedded in a test:
+ * <pre>
+ * java -cp p2p.jar -Dloader.main=mastercardsend.api.p2p.standin.StandInServer org.springframework.boot.loader.PropertiesLauncher
+ *      -Dstandin.port=8089 -Dstandin.latency.median-millis=80 -Dstandin.error-rate.server-error=0.01
+ * </pre>
+ * Requests are POSTed as JSON to /send/v1/partners/{partnerId}/ followed by the AccountInfo or PaymentTransfer resource path,
+ * and transfers are read with a GET of the same prefix followed by /transfers/{transferId}.
+ */
+public class StandInServer {
+    private static final Logger log = LoggerFactory.getLogger(StandInServer.class);
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final String PARTNERS = "/partners/";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final StandInSendApi api;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String accountInfoPath;
+    private final String paymentTransferPath;
+    private final String paymentTransferReadPrefix;
+
+    /**
+     * @param env Environment from which the standin.* properties are obtained
+     * @throws IOException if the port can not be bound
+     */
+    public StandInServer(Environment env) throws IOException {
+        this.api = new StandInSendApi(env);
+        this.accountInfoPath = env.getProperty("standin.path.account-info", "/account-info");
+        this.paymentTransferPath = env.getProperty("standin.path.payment-transfer", "/transfers/payment");
+        this.paymentTransferReadPrefix = env.getProperty("standin.path.payment-transfer-read", "/transfers/");
+        this.server = HttpServer.create(new InetSocketAddress(env.getProperty("standin.port", Integer.class, 8089)), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        StandInServer server = new StandInServer(new StandardEnvironment());
+        server.start();
+        log.info("Mastercard Send stand-in listening on port {}", server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            int partnerStart = path.indexOf(PARTNERS);
+            boolean get = "GET".equals(exchange.getRequestMethod());
+            if (!(get || "POST".equals(exchange.getRequestMethod())) || partnerStart < 0) {
+                respond(exchange, 404, error("Not found", "RESOURCE_NOT_FOUND"));
+                return;
+            }
+            int partnerEnd = path.indexOf('/', partnerStart + PARTNERS.length());
+            String resource = partnerEnd < 0 ? "" : path.substring(partnerEnd);
+            String partnerId = path.substring(partnerStart + PARTNERS.length(), partnerEnd < 0 ? path.length() : partnerEnd);
+            if (get) {
+                if (resource.startsWith(paymentTransferReadPrefix) && resource.length() > paymentTransferReadPrefix.length()) {
+                    respond(exchange, 200, api.readPaymentTransfer(partnerId, resource.substring(paymentTransferReadPrefix.length())));
+                } else {
+                    respond(exchange, 404, error("Not found", "RESOURCE_NOT_FOUND"));
+                }
+                return;
+            }
+
+            RequestMap request = new RequestMap();
+            try (InputStream is = exchange.getRequestBody()) {
+                request.putAll(mapper.readValue(is, MAP_TYPE));
+            }
+            request.set("partnerId", partnerId);
+
+            if (resource.equals(accountInfoPath)) {
+                respond(exchange, 200, api.readAccountInfo(request));
+            } else if (resource.equals(paymentTransferPath)) {
+                respond(exchange, 200, api.createPaymentTransfer(request));
+            } else {
+                respond(exchange, 404, error("Not found", "RESOURCE_NOT_FOUND"));
+            }
+        } catch (SendApiException e) {
+            respond(exchange, e.getHttpStatus() == 0 ? 504 : e.getHttpStatus(), error(e.getMessage(), e.getReasonCode()));
+        } catch (IOException | RuntimeException e) {
+            respond(exchange, 400, error(e.getMessage(), "INVALID_INPUT_FORMAT"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return Error body in the format of the Mastercard APIs
+     */
+    private static Map<String, Object> error(String description, String reasonCode) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("Source", "StandIn");
+        error.put("ReasonCode", reasonCode);
+        error.put("Description", description);
+        error.put("Recoverable", false);
+        return Collections.singletonMap("Errors",
+                Collections.singletonMap("Error", Collections.singletonList(error)));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(json);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package mastercardsend.api.p2p.transport;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Idle crypto engines (Signature, MessageDigest) shared by the threads signing requests.
+ * Engines are not thread-safe, so each call borrows one and returns it when done. The pool keeps at most a few idle
+ * engines per processor: unlike a per-thread cache it does not grow with the number of threads, which on virtual
+ * threads is one per request, and engines are reused across them.
+ * @param <T> Type of the engines
+ */
+final class EnginePool<T> {
+    private static final int CAPACITY = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final ArrayBlockingQueue<T> idle = new ArrayBlockingQueue<>(CAPACITY);
+    private final Supplier<T> factory;
+
+    /**
+     * @param factory Creates an engine when none is idle
+     */
+    EnginePool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return An idle engine, or a new one if none is idle
+     */
+    T borrow() {
+        T engine = idle.poll();
+        return engine != null ? engine : factory.get();
+    }
+
+    /**
+     * Make an engine available again, in the state the next borrower expects. Dropped if the pool is full.
+     * @param engine Engine borrowed from this pool
+     */
+    void release(T engine) {
+        idle.offer(engine);
+    }
+}
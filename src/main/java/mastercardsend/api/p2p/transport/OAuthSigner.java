@@ -0,0 +1,122 @@
+package mastercardsend.api.p2p.transport;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OAuth 1.0a signer of the Mastercard API requests: RSA-SHA256 signature over the signature base string,
+ * with the SHA-256 hash of the body sent as oauth_body_hash.
+ */
+public class OAuthSigner {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Engines are not thread-safe, borrowed for each request
+    private static final EnginePool<MessageDigest> SHA_256 = new EnginePool<>(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    });
+
+    private final String consumerKey;
+    private final SigningKey signingKey;
+
+    /**
+     * @param consumerKey Consumer key from the Mastercard Developers project
+     * @param signingKey Private key of the project
+     */
+    public OAuthSigner(String consumerKey, SigningKey signingKey) {
+        this.consumerKey = consumerKey;
+        this.signingKey = signingKey;
+    }
+
+    /**
+     * Sign a request.
+     * @param method HTTP method
+     * @param uri Request URI, its query parameters are signed
+     * @param body Request body, empty for none
+     * @return The Authorization header value
+     * @throws GeneralSecurityException if the request can not be signed
+     */
+    public String authorizationHeader(String method, URI uri, byte[] body) throws GeneralSecurityException {
+        Map<String, String> oauthParameters = new LinkedHashMap<>();
+        MessageDigest sha256 = SHA_256.borrow();
+        byte[] bodyHash = sha256.digest(body); // resets the engine for the next request
+        SHA_256.release(sha256);
+        oauthParameters.put("oauth_body_hash", Base64.getEncoder().encodeToString(bodyHash));
+        oauthParameters.put("oauth_consumer_key", consumerKey);
+        oauthParameters.put("oauth_nonce", Long.toHexString(RANDOM.nextLong()) + Long.toHexString(RANDOM.nextLong()));
+        oauthParameters.put("oauth_signature_method", "RSA-SHA256");
+        oauthParameters.put("oauth_timestamp", Long.toString(System.currentTimeMillis() / 1000));
+        oauthParameters.put("oauth_version", "1.0");
+
+        byte[] signature = signingKey.sign(baseString(method, uri, oauthParameters).getBytes(StandardCharsets.UTF_8));
+        oauthParameters.put("oauth_signature", Base64.getEncoder().encodeToString(signature));
+
+        StringBuilder header = new StringBuilder("OAuth ");
+        for (Map.Entry<String, String> parameter : oauthParameters.entrySet()) {
+            if (header.length() > 6) {
+                header.append(',');
+            }
+            header.append(parameter.getKey()).append("=\"").append(encode(parameter.getValue())).append('"');
+        }
+        return header.toString();
+    }
+
+    /**
+     * @return Method, base URI and sorted, encoded query and OAuth parameters, as defined by RFC 5849 section 3.4.1
+     */
+    static String baseString(String method, URI uri, Map<String, String> oauthParameters) {
+        List<String> parameters = new ArrayList<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = decode(equals < 0 ? parameter : parameter.substring(0, equals));
+                String value = equals < 0 ? "" : decode(parameter.substring(equals + 1));
+                parameters.add(encode(name) + '=' + encode(value));
+            }
+        }
+        for (Map.Entry<String, String> parameter : oauthParameters.entrySet()) {
+            parameters.add(encode(parameter.getKey()) + '=' + encode(parameter.getValue()));
+        }
+        parameters.sort(null);
+
+        String scheme = uri.getScheme().toLowerCase();
+        int port = uri.getPort();
+        boolean defaultPort = port < 0 || ("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443);
+        String baseUri = scheme + "://" + uri.getHost().toLowerCase() + (defaultPort ? "" : ":" + port) + uri.getRawPath();
+        return method.toUpperCase() + '&' + encode(baseUri) + '&' + encode(String.join("&", parameters));
+    }
+
+    /**
+     * @return The value percent-encoded as required by RFC 3986
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package mastercardsend.api.p2p.transport;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+import mastercardsend.api.p2p.service.PartnerProfile;
+import mastercardsend.api.p2p.service.PartnerRegistry;
+import mastercardsend.api.p2p.service.SendApiClient;
+import mastercardsend.api.p2p.service.SendApiException;
+import mastercardsend.api.p2p.service.TransferMetrics;
+import mastercardsend.api.p2p.service.UnknownTenantException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mastercard Send API calls made directly over HTTP, with a pool of keep-alive connections instead of the SDK transport.
+ * Requests are the same RequestMap the SDK would send, posted as JSON and signed with OAuth 1.0a.
+ * Selected with sendapi.client=pooled, and configured with the sendapi.http.* properties:
+ * <ul>
+ * <li>base-url, the account-info-path and payment-transfer-path templates containing {partnerId},
+ * and the payment-transfer-read-path template also containing {transferId}</li>
+ * <li>max-total connections, max-per-route for the API host, and route-limits for other hosts
+ * as a comma-separated list of scheme://host[:port]=max</li>
+ * <li>connect-timeout-millis, read-timeout-millis and connection-request-timeout-millis (waiting for a pooled connection)</li>
+ * <li>keep-alive-seconds when the server does not say, idle-eviction-seconds and validate-after-inactivity-millis</li>
+ * </ul>
+ * With sendapi.lazy-init the signing key is only read when the first request is signed, or by {@link #warmUp()}.
+ * <p>
+ * Every partner of the {@link PartnerRegistry} has its own signer and signing key, chosen by the partner ID of each
+ * request, so requests for different partners share the connection pool but no signing state.
+ */
+@Component
+@ConditionalOnProperty(name = "sendapi.client", havingValue = "pooled")
+public class PooledSendApiClient implements SendApiClient {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final String accountInfoPath;
+    private final String paymentTransferPath;
+    private final String paymentTransferReadPath;
+    private final PartnerRegistry partners;
+    // Signer of each partner, by tenant
+    private final Map<String, OAuthSigner> signers;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * Read the signing keys, unless deferred by sendapi.lazy-init, and open the connection pool.
+     * @param env Environment from which property details are obtained
+     * @param metrics Metrics the pool statistics are published to
+     * @param partners Partners signed for, each with its own key
+     * @throws IOException if a p12 file can not be read
+     * @throws GeneralSecurityException if a signing key can not be recovered
+     */
+    @Autowired
+    public PooledSendApiClient(Environment env, TransferMetrics metrics, PartnerRegistry partners)
+            throws IOException, GeneralSecurityException {
+        this.baseUrl = env.getProperty("sendapi.http.base-url", "https://sandbox.api.mastercard.com");
+        this.accountInfoPath = env.getProperty("sendapi.http.account-info-path", "/send/v1/partners/{partnerId}/account-info");
+        this.paymentTransferPath = env.getProperty("sendapi.http.payment-transfer-path", "/send/v1/partners/{partnerId}/transfers/payment");
+        this.paymentTransferReadPath = env.getProperty("sendapi.http.payment-transfer-read-path", "/send/v1/partners/{partnerId}/transfers/{transferId}");
+        this.partners = partners;
+        Map<String, OAuthSigner> signers = new LinkedHashMap<>();
+        for (PartnerProfile partner : partners.getPartners()) {
+            signers.put(partner.getTenant(), new OAuthSigner(partner.getConsumerKey(), new SigningKey(partner.getP12PrivateKey(),
+                    partner.getKeyAlias(), partner.getKeyPassword(),
+                    env.getProperty("signing.key.reload-check-millis", Long.class, 10000L),
+                    env.getProperty("sendapi.lazy-init", Boolean.class, false))));
+        }
+        this.signers = Collections.unmodifiableMap(signers);
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(env.getProperty("sendapi.http.max-total", Integer.class, 200));
+        connectionManager.setDefaultMaxPerRoute(env.getProperty("sendapi.http.max-per-route", Integer.class, 100));
+        connectionManager.setMaxPerRoute(route(baseUrl), env.getProperty("sendapi.http.max-per-route", Integer.class, 100));
+        for (String limit : env.getProperty("sendapi.http.route-limits", "").split(",")) {
+            int equals = limit.lastIndexOf('=');
+            if (equals > 0) {
+                connectionManager.setMaxPerRoute(route(limit.substring(0, equals).trim()), Integer.parseInt(limit.substring(equals + 1).trim()));
+            }
+        }
+        connectionManager.setValidateAfterInactivity(env.getProperty("sendapi.http.validate-after-inactivity-millis", Integer.class, 2000));
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(env.getProperty("sendapi.http.connect-timeout-millis", Integer.class, 2000))
+                .setSocketTimeout(env.getProperty("sendapi.http.read-timeout-millis", Integer.class, 10000))
+                .setConnectionRequestTimeout(env.getProperty("sendapi.http.connection-request-timeout-millis", Integer.class, 1000))
+                .build();
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(env.getProperty("sendapi.http.keep-alive-seconds", Long.class, 30L));
+        ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAliveMillis;
+        };
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAlive)
+                .evictExpiredConnections()
+                .evictIdleConnections(env.getProperty("sendapi.http.idle-eviction-seconds", Long.class, 30L), TimeUnit.SECONDS)
+                .build();
+        metrics.bind(connectionManager);
+    }
+
+    /**
+     * @return The pool key of the connections to the host of the URL
+     */
+    private static HttpRoute route(String url) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * @param partnerId Partner ID a request is sent for
+     * @return Signer of the partner
+     * @throws SendApiException if no tenant has this partner ID
+     */
+    private OAuthSigner signer(String partnerId) throws SendApiException {
+        try {
+            return signers.get(partners.forPartnerId(partnerId).getTenant());
+        } catch (UnknownTenantException e) {
+            throw new SendApiException(400, e.getMessage(), PartnerRegistry.UNKNOWN_PARTNER, "local", e);
+        }
+    }
+
+    /**
+     * Read the signing key of every partner and sign a request that is not sent, preparing the signing engines of this thread.
+     */
+    @Override
+    public void warmUp() throws SendApiException {
+        URI uri = URI.create(baseUrl + paymentTransferPath.replace("{partnerId}", "warm-up"));
+        for (Map.Entry<String, OAuthSigner> signer : signers.entrySet()) {
+            try {
+                signer.getValue().authorizationHeader("POST", uri, new byte[0]);
+            } catch (GeneralSecurityException e) {
+                throw new SendApiException(0, "Could not sign the request of tenant " + signer.getKey() + ": " + e.getMessage(),
+                        "SIGNING_ERROR", "local", e);
+            }
+        }
+    }
+
+    @Override
+    public AccountInfo readAccountInfo(RequestMap map) throws SendApiException {
+        return new AccountInfo(post(accountInfoPath, map));
+    }
+
+    @Override
+    public PaymentTransfer createPaymentTransfer(RequestMap map) throws SendApiException {
+        return new PaymentTransfer(post(paymentTransferPath, map));
+    }
+
+    @Override
+    public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException {
+        URI uri = URI.create(baseUrl + paymentTransferReadPath
+                .replace("{partnerId}", OAuthSigner.encode(partnerId))
+                .replace("{transferId}", OAuthSigner.encode(transferId)));
+        return new PaymentTransfer(execute(new HttpGet(uri), new byte[0], signer(partnerId)));
+    }
+
+    /**
+     * Post the request body to the resource of the partner.
+     * @param pathTemplate Resource path containing {partnerId}
+     * @param map Request containing the partner ID and the body
+     * @return The response body
+     * @throws SendApiException if no response was received or the response is an error
+     */
+    private RequestMap post(String pathTemplate, RequestMap map) throws SendApiException {
+        Map<String, Object> body = new LinkedHashMap<>(map);
+        Object partnerId = body.remove("partnerId");
+        URI uri = URI.create(baseUrl + pathTemplate.replace("{partnerId}", OAuthSigner.encode(String.valueOf(partnerId))));
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new SendApiException(0, "Could not write the request: " + e.getMessage(), "INVALID_INPUT_FORMAT", "local", e);
+        }
+        HttpPost post = new HttpPost(uri);
+        post.setEntity(new ByteArrayEntity(json, ContentType.APPLICATION_JSON));
+        return execute(post, json, signer(partnerId == null ? null : partnerId.toString()));
+    }
+
+    /**
+     * Sign and send a request.
+     * @param request Request to send, with its body if any
+     * @param body Bytes of the body, empty for none
+     * @param signer Signer of the partner the request is sent for
+     * @return The response body
+     * @throws SendApiException if no response was received or the response is an error
+     */
+    private RequestMap execute(HttpRequestBase request, byte[] body, OAuthSigner signer) throws SendApiException {
+        try {
+            request.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+            request.setHeader(HttpHeaders.AUTHORIZATION, signer.authorizationHeader(request.getMethod(), request.getURI(), body));
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int status = response.getStatusLine().getStatusCode();
+                // reading the whole entity returns the connection to the pool
+                byte[] content = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+                if (status / 100 != 2) {
+                    throw error(status, content);
+                }
+                RequestMap result = new RequestMap();
+                if (content.length > 0) {
+                    result.putAll(mapper.readValue(content, MAP_TYPE));
+                }
+                return result;
+            }
+        } catch (SocketTimeoutException e) {
+            throw new SendApiException(0, "Read timed out", "TIMEOUT", "local", e);
+        } catch (IOException e) {
+            throw new SendApiException(0, e.getMessage(), "CONNECTION_ERROR", "local", e);
+        } catch (GeneralSecurityException e) {
+            throw new SendApiException(0, "Could not sign the request: " + e.getMessage(), "SIGNING_ERROR", "local", e);
+        }
+    }
+
+    /**
+     * @return The error of a Mastercard API error body, or of the status alone if the body is not one
+     */
+    private SendApiException error(int status, byte[] content) {
+        try {
+            JsonNode error = mapper.readTree(content).path("Errors").path("Error");
+            if (error.isArray()) {
+                error = error.path(0);
+            }
+            return new SendApiException(status, error.path("Description").asText("HTTP " + status),
+                    error.path("ReasonCode").asText(null), error.path("Source").asText(null), null);
+        } catch (IOException | RuntimeException e) {
+            return new SendApiException(status, "HTTP " + status, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package mastercardsend.api.p2p.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RSA key signing the Mastercard API requests, read and decoded from its PKCS#12 file once.
+ * SHA256withRSA engines initialized with the key are borrowed from a small {@link EnginePool}, so signing a request
+ * usually does no provider lookup and no key conversion. The file is checked for changes at most every reload-check interval and the key replaced
+ * when it was modified; a file that can not be read (e.g. while being rewritten) keeps the previous key in use.
+ * A lazy key is only read when the first request is signed, so that the application starts without decoding it.
+ */
+public class SigningKey {
+    private static final Logger log = LoggerFactory.getLogger(SigningKey.class);
+
+    private static final String ALGORITHM = "SHA256withRSA";
+
+    private final Path path;
+    private final String keyAlias;
+    private final String keyPassword;
+    private final long checkIntervalNanos;
+    private final EnginePool<Engine> engines = new EnginePool<>(Engine::new);
+    private volatile Loaded loaded;
+    private volatile long nextCheck;
+
+    /**
+     * Read the key.
+     * @param p12Path Path of the p12 file
+     * @param keyAlias Alias of the key
+     * @param keyPassword Password of the key store and of the key
+     * @param checkIntervalMillis How often the file is checked for changes, 0 to never reload
+     * @throws IOException if the file can not be read
+     * @throws GeneralSecurityException if the key can not be recovered
+     */
+    public SigningKey(String p12Path, String keyAlias, String keyPassword, long checkIntervalMillis)
+            throws IOException, GeneralSecurityException {
+        this(p12Path, keyAlias, keyPassword, checkIntervalMillis, false);
+    }
+
+    /**
+     * @param p12Path Path of the p12 file
+     * @param keyAlias Alias of the key
+     * @param keyPassword Password of the key store and of the key
+     * @param checkIntervalMillis How often the file is checked for changes, 0 to never reload
+     * @param lazy True to read the key when the first request is signed rather than now
+     * @throws IOException if the file can not be read
+     * @throws GeneralSecurityException if the key can not be recovered
+     */
+    public SigningKey(String p12Path, String keyAlias, String keyPassword, long checkIntervalMillis, boolean lazy)
+            throws IOException, GeneralSecurityException {
+        this.path = Paths.get(p12Path);
+        this.keyAlias = keyAlias;
+        this.keyPassword = keyPassword;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkIntervalMillis);
+        if (!lazy) {
+            this.loaded = load();
+            this.nextCheck = System.nanoTime() + checkIntervalNanos;
+        }
+    }
+
+    private SigningKey(PrivateKey key) {
+        this.path = null;
+        this.keyAlias = null;
+        this.keyPassword = null;
+        this.checkIntervalNanos = 0;
+        this.loaded = new Loaded(key, 0);
+    }
+
+    /**
+     * @param key Private key
+     * @return A signing key that is never reloaded
+     */
+    public static SigningKey of(PrivateKey key) {
+        return new SigningKey(key);
+    }
+
+    /**
+     * Sign data with the current key.
+     * @param data Data to sign
+     * @return The SHA256withRSA signature
+     * @throws GeneralSecurityException if the data can not be signed
+     */
+    public byte[] sign(byte[] data) throws GeneralSecurityException {
+        Loaded current = current();
+        Engine engine = engines.borrow();
+        if (engine.key != current) {
+            engine.signature.initSign(current.privateKey);
+            engine.key = current;
+        }
+        engine.signature.update(data);
+        byte[] signature = engine.signature.sign(); // resets the engine for the next request
+        engines.release(engine); // not returned on failure, its state is unknown
+        return signature;
+    }
+
+    /**
+     * @return The key currently in use
+     * @throws GeneralSecurityException if a lazy key can not be read
+     */
+    public PrivateKey getPrivateKey() throws GeneralSecurityException {
+        return current().privateKey;
+    }
+
+    private Loaded current() throws GeneralSecurityException {
+        Loaded current = loaded;
+        if (current == null) {
+            return loadFirst();
+        }
+        if (path != null && checkIntervalNanos > 0 && System.nanoTime() - nextCheck >= 0) {
+            reloadIfModified();
+            current = loaded;
+        }
+        return current;
+    }
+
+    private synchronized Loaded loadFirst() throws GeneralSecurityException {
+        if (loaded == null) { // not read by another thread meanwhile
+            Loaded first;
+            try {
+                first = load();
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Could not read the signing key from " + path + ": " + e.getMessage(), e);
+            }
+            nextCheck = System.nanoTime() + checkIntervalNanos;
+            loaded = first;
+        }
+        return loaded;
+    }
+
+    private synchronized void reloadIfModified() {
+        long now = System.nanoTime();
+        if (now - nextCheck < 0) {
+            return; // checked by another thread
+        }
+        nextCheck = now + checkIntervalNanos;
+        try {
+            if (Files.getLastModifiedTime(path).toMillis() != loaded.modified) {
+                loaded = load();
+                log.info("Signing key reloaded from {}.", path);
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            log.error("Could not reload the signing key from {}, previous key kept: {}", path, e.getMessage());
+        }
+    }
+
+    private Loaded load() throws IOException, GeneralSecurityException {
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        try (InputStream is = Files.newInputStream(path)) {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(is, keyPassword.toCharArray());
+            PrivateKey key = (PrivateKey) keyStore.getKey(keyAlias, keyPassword.toCharArray());
+            if (key == null) {
+                throw new GeneralSecurityException("No key with alias " + keyAlias + " in " + path);
+            }
+            return new Loaded(key, modified);
+        }
+    }
+
+    private static final class Loaded {
+        private final PrivateKey privateKey;
+        // Modification time of the file the key was read from
+        private final long modified;
+
+        private Loaded(PrivateKey privateKey, long modified) {
+            this.privateKey = privateKey;
+            this.modified = modified;
+        }
+    }
+
+    private static final class Engine {
+        private final Signature signature;
+        // Key the engine was initialized with
+        private Loaded key;
+
+        private Engine() {
+            try {
+                this.signature = Signature.getInstance(ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available.", e);
+            }
+        }
+    }
+}
@@ -2,26 +2,42 @@ package mastercardsend.api.p2p;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.MastercardService;
+import mastercardsend.api.p2p.service.PartnerRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import java.io.IOException;
 
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.util.ResourceUtils.getFile;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "partners.tenants=acme",
+        "partners.acme.partner-id=ptnr_acme",
+        "partners.acme.consumer-key=acme-consumer-key",
+        "partners.acme.p12-private-key=acme.p12",
+        "partners.acme.key-alias=acme"})
 @AutoConfigureMockMvc
 @PropertySource("classpath:application.properties")
 public class P2pApplicationTest {
@@ -37,22 +53,50 @@ public class P2pApplicationTest {
     @Value("${partnerId}")
     private String partnerId;
 
+    // Records the transfers reaching the service, so the partner they are sent for can be checked
+    @SpyBean
+    private MastercardService service;
+
     @Test
-    public void testCreatePaymentTransferMissingPartnerId() throws Exception {
+    public void testCreatePaymentTransferMissingPartnerIdSentForDefaultTenant() throws Exception {
         MastercardSendPaymentTransfer paymentTransfer = getMastercardSendPaymentTransfer(PAYMENT_TRANSFER_JSON_FILE);
+        perform(post("/createPaymentTransfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(paymentTransfer)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testCreatePaymentTransferUnknownTenant() throws Exception {
+        MastercardSendPaymentTransfer paymentTransfer = getMastercardSendPaymentTransfer(PAYMENT_TRANSFER_JSON_FILE);
+        paymentTransfer.setPartnerId(partnerId);
         mvc.perform(post("/createPaymentTransfer")
-                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .header(PartnerRegistry.TENANT_HEADER, "unknown")
+                .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(paymentTransfer)))
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void testCreatePaymentTransferAsyncSentForTenant() throws Exception {
+        MastercardSendPaymentTransfer paymentTransfer = getMastercardSendPaymentTransfer(PAYMENT_TRANSFER_JSON_FILE);
+        paymentTransfer.setPartnerId(partnerId);
+        perform(post("/async/createPaymentTransfer")
+                .header(PartnerRegistry.TENANT_HEADER, "acme")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(paymentTransfer)))
+                .andExpect(status().isBadRequest()); // the SDK client only signs for the default tenant
+        verify(service).isEligible(argThat(transfer -> "ptnr_acme".equals(transfer.getPartnerId())));
+        verify(service, never()).isEligible(argThat(transfer -> partnerId.equals(transfer.getPartnerId())));
+    }
+
     @Test
     public void testCreatePaymentTransferIneligibleRecipientAccount() throws Exception {
         MastercardSendPaymentTransfer paymentTransfer = getMastercardSendPaymentTransfer(PAYMENT_TRANSFER_JSON_FILE);
         paymentTransfer.setPartnerId(partnerId);
         paymentTransfer.setRecipientAccountUri("pan:5432123456789012;exp=2099-02;cvc=123");
-        mvc.perform(post("/createPaymentTransfer")
-                .contentType(MediaType.APPLICATION_JSON_UTF8)
+        perform(post("/createPaymentTransfer")
+                .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(paymentTransfer)))
                 .andExpect(status().isBadRequest());
 
@@ -62,7 +106,7 @@ public class P2pApplicationTest {
     public void testCreatePaymentTransferSuccessWithForm() throws Exception {
         MastercardSendPaymentTransfer paymentTransfer = getMastercardSendPaymentTransfer(PAYMENT_TRANSFER_JSON_FILE_FOR_FORM);
         paymentTransfer.setPartnerId(partnerId);
-        mvc.perform(post("/submitForm").flashAttr("paymentTransfer", paymentTransfer)
+        perform(post("/submitForm").flashAttr("paymentTransfer", paymentTransfer)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED))
                 .andExpect(MockMvcResultMatchers.flash().attribute("success", "Payment for Jane Smith was successfully made!"))
                 .andExpect(redirectedUrl("/"));
@@ -72,12 +116,28 @@ public class P2pApplicationTest {
     public void testCreatePaymentTransferSuccess() throws Exception {
         MastercardSendPaymentTransfer paymentTransfer = getMastercardSendPaymentTransfer(PAYMENT_TRANSFER_JSON_FILE);
         paymentTransfer.setPartnerId(partnerId);
-        mvc.perform(post("/createPaymentTransfer")
-                .contentType(MediaType.APPLICATION_JSON_UTF8)
+        perform(post("/createPaymentTransfer")
+                .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(paymentTransfer)))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testAssetsServedFromTheirOwnDirectory() throws Exception {
+        mvc.perform(get("/css/application.css")).andExpect(status().isOk());
+        mvc.perform(get("/js/application.js")).andExpect(status().isOk());
+        mvc.perform(get("/css/application.js")).andExpect(status().isNotFound());
+        mvc.perform(get("/js/application.css")).andExpect(status().isNotFound());
+    }
+
+    /**
+     * Perform a request whose handler returns a future, and dispatch its result.
+     */
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mvc.perform(request).andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(started));
+    }
+
     private MastercardSendPaymentTransfer getMastercardSendPaymentTransfer(String filePath) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         return mapper.readValue(getFile(filePath), MastercardSendPaymentTransfer.class);
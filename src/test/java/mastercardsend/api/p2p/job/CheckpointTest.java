@@ -0,0 +1,68 @@
+package mastercardsend.api.p2p.job;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Resumes checkpoints written by runs that stopped with rows in flight.
+ */
+public class CheckpointTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResumesBeforeTheFirstRowInFlight() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("input.checkpoint");
+        try (Checkpoint checkpoint = Checkpoint.open(file, 100, 2)) {
+            checkpoint.started(0, 10);
+            checkpoint.started(10, 20);
+            checkpoint.started(20, 30);
+            checkpoint.completed(0, "SUCCESS", "trn_0");
+            checkpoint.completed(20, "FAILED", "INVALID_AMOUNT"); // offset 10 recorded, row 10 in flight
+            checkpoint.started(30, 40);
+        }
+        try (Checkpoint checkpoint = Checkpoint.open(file, 100, 2)) {
+            assertEquals(10, checkpoint.getResumeOffset());
+            assertFalse(checkpoint.isCompleted(10));
+            assertTrue(checkpoint.isCompleted(20));
+            assertFalse(checkpoint.isCompleted(30));
+        }
+    }
+
+    @Test
+    public void testIgnoresRowCutShort() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("input.checkpoint");
+        try (Checkpoint checkpoint = Checkpoint.open(file, 100, 10)) {
+            checkpoint.started(0, 10);
+            checkpoint.completed(0, "SUCCESS", "trn_0");
+        }
+        Files.write(file, "row\t1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (Checkpoint checkpoint = Checkpoint.open(file, 100, 10)) {
+            assertTrue(checkpoint.isCompleted(0));
+            assertFalse(checkpoint.isCompleted(1));
+            checkpoint.started(10, 20);
+            checkpoint.completed(10, "SUCCESS", "trn_1");
+        }
+        try (Checkpoint checkpoint = Checkpoint.open(file, 100, 10)) {
+            assertTrue(checkpoint.isCompleted(10));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsAnotherInput() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("input.checkpoint");
+        Checkpoint.open(file, 100, 10).close();
+        Checkpoint.open(file, 200, 10);
+    }
+}
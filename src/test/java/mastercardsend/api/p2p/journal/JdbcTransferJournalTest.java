@@ -0,0 +1,90 @@
+package mastercardsend.api.p2p.journal;
+
+import com.mastercard.api.p2p.PaymentTransfer;
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import mastercardsend.api.p2p.service.TransferError;
+import mastercardsend.api.p2p.service.TransferOutcome;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Journal written to an in-memory database, entries queued before the writer starts so that they form one batch.
+ */
+public class JdbcTransferJournalTest {
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcTransferJournal journal;
+
+    @Before
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:" + UUID.randomUUID(), "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        journal = newJournal();
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    public void testSameReferenceOfTwoPartners() throws InterruptedException {
+        journal.started("ref-1", paymentTransfer("ptnr_a"));
+        journal.started("ref-1", paymentTransfer("ptnr_b"));
+        journal.completed("ptnr_a", "ref-1", success("trn_a"));
+        journal.completed("ptnr_b", "ref-1", success("trn_b"));
+        journal.start();
+        journal.stop();
+
+        assertEquals("trn_a", journal.findTransferId("ptnr_a", "ref-1"));
+        assertEquals("trn_b", journal.findTransferId("ptnr_b", "ref-1"));
+        assertNull(journal.findTransferId("ptnr_c", "ref-1"));
+    }
+
+    @Test
+    public void testRetryAfterFailureInSameBatch() throws InterruptedException {
+        journal.started("ref-1", paymentTransfer("ptnr_a"));
+        journal.start();
+        journal.stop();
+
+        journal = newJournal();
+        journal.completed("ptnr_a", "ref-1", TransferOutcome.failure(null,
+                new TransferError(503, "failed", "SYSTEM_ERROR", "test")));
+        journal.started("ref-1", paymentTransfer("ptnr_a")); // retried
+        journal.start();
+        journal.stop();
+
+        assertEquals(TransferJournal.PENDING, jdbcTemplate.queryForObject(
+                "SELECT status FROM transfer_journal WHERE partner_id = ? AND transfer_reference = ?",
+                String.class, "ptnr_a", "ref-1"));
+    }
+
+    private JdbcTransferJournal newJournal() {
+        return new JdbcTransferJournal(jdbcTemplate, new DataSourceTransactionManager(dataSource), new MockEnvironment());
+    }
+
+    private static MastercardSendPaymentTransfer paymentTransfer(String partnerId) {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+        paymentTransfer.setPartnerId(partnerId);
+        paymentTransfer.setAmount(Amount.valueOf("44"));
+        paymentTransfer.setCurrency("USD");
+        return paymentTransfer;
+    }
+
+    private static TransferOutcome success(String transferId) {
+        PaymentTransfer response = new PaymentTransfer();
+        response.set("payment_transfer.id", transferId);
+        return TransferOutcome.success(null, response);
+    }
+}
@@ -0,0 +1,289 @@
+package mastercardsend.api.p2p.loadtest;
+
+import mastercardsend.api.p2p.P2pApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator driving /createPaymentTransfer at a target rate.
+ * Latency is measured from the time each request was scheduled to be sent, so that a slow server
+ * is not hidden by the generator falling behind. With --embedded the application is started in-process
+ * against the Mastercard Send stand-in, so no network access or credentials are needed:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=mastercardsend.api.p2p.loadtest.LoadGenerator \
+ *     -Dexec.args="--embedded --rps=200 --duration-seconds=30 --threads=200"
+ * </pre>
+ * --virtual-threads runs the embedded application with spring.threads.virtual.enabled. --compare runs every rate of
+ * --rps-steps against the embedded application on platform threads and then on virtual threads, and reports for each
+ * the most transfers in flight (throughput times mean latency) sustained with p99 within --slo-millis and no failures:
+ * <pre>
+ *     -Dexec.args="--compare --rps-steps=500,1000,2000,4000 --duration-seconds=20 --threads=20000 --slo-millis=500 \
+ *         --standin.latency.median-millis=200"
+ * </pre>
+ * Other options are passed on to the embedded application, e.g. --standin.latency.median-millis=200 so that transfers
+ * spend their time waiting on the API.
+ */
+public class LoadGenerator {
+    public static final String PAYMENT_TRANSFER_JSON_FILE = "src/test/resources/MastercardSendPaymentTransfer";
+
+    private final URL url;
+    private final byte[] body;
+    private final int rps;
+    private final int durationSeconds;
+    private final int threads;
+
+    /**
+     * @param url Endpoint receiving the transfers
+     * @param body JSON body posted with every request
+     * @param rps Target requests per second
+     * @param durationSeconds How long the load is applied
+     * @param threads Maximum concurrent connections
+     */
+    public LoadGenerator(URL url, byte[] body, int rps, int durationSeconds, int threads) {
+        this.url = url;
+        this.body = body;
+        this.rps = rps;
+        this.durationSeconds = durationSeconds;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        if (options.containsKey("compare")) {
+            compare(options);
+            return;
+        }
+        ConfigurableApplicationContext context = null;
+        String url = options.get("url");
+        if (options.containsKey("embedded")) {
+            context = startEmbedded(options, options.containsKey("virtual-threads"));
+            url = embeddedUrl(context);
+        }
+        try {
+            System.out.println(generator(options, url, Integer.parseInt(options.getOrDefault("rps", "100"))).run());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Step through the rates against the embedded application in each threading mode.
+     */
+    private static void compare(Map<String, String> options) throws Exception {
+        double sloMillis = Double.parseDouble(options.getOrDefault("slo-millis", "500"));
+        String[] steps = options.getOrDefault("rps-steps", "100,200,400,800,1600").split(",");
+        double[] sustained = new double[2];
+        for (int mode = 0; mode < 2; mode++) {
+            boolean virtual = mode == 1;
+            try (ConfigurableApplicationContext context = startEmbedded(options, virtual)) {
+                for (String step : steps) {
+                    Report report = generator(options, embeddedUrl(context), Integer.parseInt(step.trim())).run();
+                    boolean sustainable = report.getFailed() == 0 && report.percentileMillis(99) <= sloMillis;
+                    System.out.println((virtual ? "virtual  " : "platform ") + "rps=" + step.trim() + " " + report
+                            + (sustainable ? "" : " (over SLO)"));
+                    if (!sustainable) {
+                        break;
+                    }
+                    sustained[mode] = Math.max(sustained[mode], report.meanInFlight());
+                }
+            }
+        }
+        System.out.println(String.format("max sustainable in-flight transfers: platform=%.0f virtual=%.0f (p99 <= %.0fms)",
+                sustained[0], sustained[1], sloMillis));
+    }
+
+    /**
+     * Start the application against the stand-in. Options with a dot in their name are passed on as properties.
+     */
+    private static ConfigurableApplicationContext startEmbedded(Map<String, String> options, boolean virtualThreads) {
+        List<String> args = new ArrayList<>(Arrays.asList("--sendapi.client=standin", "--server.port=0",
+                "--diagnostics.level=off", "--spring.threads.virtual.enabled=" + virtualThreads));
+        options.forEach((name, value) -> {
+            if (name.indexOf('.') > 0) {
+                args.add("--" + name + "=" + value);
+            }
+        });
+        return SpringApplication.run(P2pApplication.class, args.toArray(new String[0]));
+    }
+
+    private static String embeddedUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/createPaymentTransfer";
+    }
+
+    private static LoadGenerator generator(Map<String, String> options, String url, int rps) throws IOException {
+        return new LoadGenerator(new URL(url != null ? url : "http://localhost:8080/createPaymentTransfer"),
+                Files.readAllBytes(Paths.get(options.getOrDefault("body", PAYMENT_TRANSFER_JSON_FILE))),
+                rps,
+                Integer.parseInt(options.getOrDefault("duration-seconds", "30")),
+                Integer.parseInt(options.getOrDefault("threads", "200")));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int equals = option.indexOf('=');
+            options.put(equals < 0 ? option : option.substring(0, equals), equals < 0 ? "" : option.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Send the requests and wait for all of them to complete.
+     * Each request runs on its own virtual thread, at most threads of them at the same time, so the generator
+     * itself can keep many thousands of requests in flight.
+     * @return Latency percentiles and throughput
+     * @throws InterruptedException if interrupted while waiting for the last requests
+     */
+    public Report run() throws InterruptedException {
+        int total = rps * durationSeconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long[] latencies = new long[total];
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Semaphore connections = new Semaphore(threads);
+        ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int request = i;
+            pool.execute(() -> {
+                connections.acquireUninterruptibly();
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    if (send()) {
+                        succeeded.incrementAndGet();
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                    connections.release();
+                }
+                latencies[request] = System.nanoTime() - scheduled;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+        return new Report(latencies, succeeded.get(), elapsed, maxInFlight.get());
+    }
+
+    /**
+     * @return True if the response status is 2xx
+     */
+    private boolean send() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(body);
+            }
+            int status = connection.getResponseCode();
+            // drain the body so that the connection is reused
+            try (InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (is != null) {
+                    byte[] buffer = new byte[8192];
+                    while (is.read(buffer) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return status / 100 == 2;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Latency distribution and throughput of a run.
+     */
+    public static class Report {
+        private final long[] sorted;
+        private final int succeeded;
+        private final long elapsedNanos;
+        private final int maxInFlight;
+
+        Report(long[] latencies, int succeeded, long elapsedNanos, int maxInFlight) {
+            this.sorted = latencies.clone();
+            Arrays.sort(this.sorted);
+            this.succeeded = succeeded;
+            this.elapsedNanos = elapsedNanos;
+            this.maxInFlight = maxInFlight;
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return Latency in milliseconds
+         */
+        public double percentileMillis(double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        public double throughput() {
+            return sorted.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @return Average requests in flight, by Little's law the throughput times the mean latency
+         */
+        public double meanInFlight() {
+            long sum = 0;
+            for (long latency : sorted) {
+                sum += latency;
+            }
+            return sorted.length == 0 ? 0 : throughput() * (sum / (double) sorted.length / 1e9);
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return sorted.length - succeeded;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d succeeded=%d failed=%d throughput=%.1f/s in-flight=%.0f max-in-flight=%d"
+                            + " p50=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms",
+                    sorted.length, succeeded, getFailed(), throughput(), meanInFlight(), maxInFlight,
+                    percentileMillis(50), percentileMillis(99), percentileMillis(99.9), percentileMillis(100));
+        }
+    }
+}
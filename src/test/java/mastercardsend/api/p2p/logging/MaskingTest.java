@@ -0,0 +1,25 @@
+package mastercardsend.api.p2p.logging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Masking of account URIs in rendered log output.
+ */
+public class MaskingTest {
+    @Test
+    public void testAccountUrisMasked() {
+        assertEquals("\"recipient_account_uri\":\"pan:************0187;exp=2099-08;cvc=***\"",
+                Masking.mask("\"recipient_account_uri\":\"pan:5509670000000187;exp=2099-08;cvc=123\""));
+        assertEquals("sender iban:******************5432, recipient acct-ref:******",
+                Masking.mask("sender iban:GB82WEST12345698765432, recipient acct-ref:abc123"));
+    }
+
+    @Test
+    public void testOtherTextUntouched() {
+        String text = "transfer_id: 1234567890 created at 12:00";
+        assertSame(text, Masking.mask(text));
+    }
+}
@@ -0,0 +1,77 @@
+package mastercardsend.api.p2p.model;
+
+import org.junit.Test;
+
+import java.time.YearMonth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parsing, formatting and local validation of account URIs.
+ */
+public class AccountUriTest {
+    private static final YearMonth NOW = YearMonth.of(2026, 6);
+
+    @Test
+    public void testFormatAndParseRoundTrip() {
+        AccountUri built = AccountUri.of(AccountUri.Scheme.PAN, "5509670000000187", "2099", "08", "123");
+        assertEquals("pan:5509670000000187;exp=2099-08;cvc=123", built.toString());
+
+        AccountUri parsed = AccountUri.parse(built.toString());
+        assertSame(AccountUri.Scheme.PAN, parsed.getScheme());
+        assertEquals("5509670000000187", parsed.getIdentifier());
+        assertEquals("2099", parsed.getExpYear());
+        assertEquals("08", parsed.getExpMonth());
+        assertEquals("123", parsed.getCvc());
+        assertEquals(built, parsed);
+
+        assertEquals("acct-token:abc123", AccountUri.of(AccountUri.Scheme.ACCOUNT_TOKEN, "abc123").toString());
+        assertEquals("iban:GB82WEST12345698765432", AccountUri.of(AccountUri.Scheme.IBAN, "gb82 west 1234 5698 7654 32").toString());
+    }
+
+    @Test
+    public void testSchemeLookup() {
+        for (AccountUri.Scheme scheme : AccountUri.Scheme.values()) {
+            assertSame(scheme, AccountUri.Scheme.fromValue(scheme.getValue()));
+            assertSame(scheme, AccountUri.Scheme.fromLabel(scheme.getLabel().toUpperCase()));
+        }
+        assertSame(AccountUri.Scheme.FASTER_PAYMENTS_SERVICE, AccountUri.Scheme.fromLabel("faster payments service"));
+        assertNull(AccountUri.Scheme.fromValue("Faster Payments Service"));
+        assertNull(AccountUri.Scheme.fromLabel("bitcoin"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSchemeIsRejected() {
+        AccountUri.parse("bitcoin:1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa");
+    }
+
+    @Test
+    public void testPanValidation() {
+        assertNull(AccountUri.parse("pan:5509670000000187;exp=2099-08;cvc=123").validate(NOW));
+        assertNull(AccountUri.parse("pan:5509670000000187;exp=2026-06").validate(NOW));
+        assertEquals("PAN fails the Luhn check", AccountUri.parse("pan:5509670000000188;exp=2099-08").validate(NOW));
+        assertEquals("card has expired", AccountUri.parse("pan:5509670000000187;exp=2026-05").validate(NOW));
+        assertEquals("expiry is not YYYY-MM", AccountUri.parse("pan:5509670000000187;exp=2099-13").validate(NOW));
+        assertEquals("CVC is not 3 or 4 digits", AccountUri.parse("pan:5509670000000187;cvc=12").validate(NOW));
+        assertFalse(AccountUri.parse("pan:55096700000a0187").validate(NOW) == null);
+    }
+
+    @Test
+    public void testIbanValidation() {
+        assertTrue(AccountUri.isIbanValid("GB82WEST12345698765432"));
+        assertTrue(AccountUri.isIbanValid("DE89370400440532013000"));
+        assertFalse(AccountUri.isIbanValid("GB82WEST12345698765433"));
+        assertFalse(AccountUri.isIbanValid("GB82"));
+        assertEquals("IBAN fails the mod-97 check", AccountUri.parse("iban:DE89370400440532013001").validate(NOW));
+    }
+
+    @Test
+    public void testOtherSchemesNeedAnIdentifier() {
+        assertNull(AccountUri.parse("acct-token:abc123").validate(NOW));
+        assertEquals("identifier is missing", AccountUri.parse("fps-acct:").validate(NOW));
+    }
+}
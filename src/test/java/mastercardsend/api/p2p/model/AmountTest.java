@@ -0,0 +1,65 @@
+package mastercardsend.api.p2p.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Minor-unit amounts, their wire format and the currency table.
+ */
+public class AmountTest {
+
+    @Test
+    public void testParseAndFormat() {
+        assertEquals(4400, Amount.valueOf("4400").getMinorUnits());
+        assertEquals(-5, Amount.valueOf(" -5 ").getMinorUnits());
+        assertEquals("44.00", Amount.valueOf("4400").toMajorUnits(2));
+        assertEquals("0.05", Amount.valueOf("5").toMajorUnits(2));
+        assertEquals("0.044", Amount.valueOf("44").toMajorUnits(3));
+        assertEquals("44", Amount.valueOf("44").toMajorUnits(0));
+        assertEquals(2, Amount.valueOf("44").band());
+        assertEquals(Amount.valueOf("10"), Amount.valueOf("4").plus(Amount.valueOf("6")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecimalIsRejected() {
+        Amount.valueOf("44.00");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverflowIsRejected() {
+        Amount.valueOf("92233720368547758070");
+    }
+
+    @Test
+    public void testJsonWireFormat() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals("\"4400\"", mapper.writeValueAsString(Amount.valueOf("4400")));
+        assertEquals(Amount.valueOf("4400"), mapper.readValue("\"4400\"", Amount.class));
+        assertEquals(Amount.valueOf("4400"), mapper.readValue("4400", Amount.class));
+    }
+
+    @Test
+    public void testCurrencyTable() {
+        assertEquals(2, CurrencyTable.exponent("USD"));
+        assertEquals(0, CurrencyTable.exponent("JPY"));
+        assertEquals(3, CurrencyTable.exponent("KWD"));
+        assertEquals(-1, CurrencyTable.exponent("usd"));
+        assertEquals(-1, CurrencyTable.exponent("ABC"));
+
+        CurrencyTable table = new CurrencyTable("usd, EUR");
+        assertTrue(table.isAllowed("USD"));
+        assertFalse(table.isAllowed("GBP"));
+        assertTrue(new CurrencyTable("").isAllowed("GBP"));
+        assertFalse(new CurrencyTable("").isAllowed(null));
+        assertTrue(new CurrencyTable(" ").isAllowed("GBP"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCurrencyTableRejectsUnknownCode() {
+        new CurrencyTable("USD,EUX");
+    }
+}
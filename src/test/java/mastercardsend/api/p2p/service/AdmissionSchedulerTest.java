@@ -0,0 +1,86 @@
+package mastercardsend.api.p2p.service;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Admission of transfers completing on demand, with two slots and one of them for bulk transfers.
+ */
+public class AdmissionSchedulerTest {
+    private final AdmissionScheduler admission = new AdmissionScheduler(new MockEnvironment()
+            .withProperty("admission.max-concurrent", "2")
+            .withProperty("admission.bulk.max-concurrent", "1")
+            .withProperty("admission.bulk.queue-depth", "2")
+            .withProperty("admission.interactive.deadline-millis", "50"));
+    // Started transfers, also added by the admission workers
+    private final List<CompletableFuture<String>> transfers = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        transfers.forEach(transfer -> transfer.complete("done"));
+        admission.shutdown();
+    }
+
+    @Test
+    public void testBulkLeavesSlotsFree() {
+        CompletableFuture<String> bulk = submit(AdmissionScheduler.Lane.BULK);
+        CompletableFuture<String> queued = submit(AdmissionScheduler.Lane.BULK);
+        submit(AdmissionScheduler.Lane.INTERACTIVE);
+        assertEquals(1, admission.getInFlight(AdmissionScheduler.Lane.BULK));
+        assertEquals(1, admission.getWaiting(AdmissionScheduler.Lane.BULK));
+        assertEquals(1, admission.getInFlight(AdmissionScheduler.Lane.INTERACTIVE));
+
+        transfers.get(0).complete("done");
+        assertEquals("done", bulk.join());
+        assertFalse(queued.isDone());
+        assertEquals(0, admission.getWaiting(AdmissionScheduler.Lane.BULK)); // admitted once the first completed
+        assertEquals(1, admission.getInFlight(AdmissionScheduler.Lane.BULK));
+    }
+
+    @Test
+    public void testFullQueueRejected() {
+        submit(AdmissionScheduler.Lane.BULK);
+        submit(AdmissionScheduler.Lane.BULK);
+        submit(AdmissionScheduler.Lane.BULK);
+        CompletableFuture<String> rejected = submit(AdmissionScheduler.Lane.BULK);
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(1, admission.getRejected(AdmissionScheduler.Lane.BULK));
+        assertEquals(1, transfers.size()); // only the admitted transfer started
+    }
+
+    @Test
+    public void testDeadlineShed() {
+        submit(AdmissionScheduler.Lane.INTERACTIVE);
+        submit(AdmissionScheduler.Lane.INTERACTIVE);
+        try {
+            submit(AdmissionScheduler.Lane.INTERACTIVE).join();
+            fail("Transfer admitted after its deadline");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof AdmissionRejectedException);
+        }
+        assertEquals(1, admission.getShed(AdmissionScheduler.Lane.INTERACTIVE));
+        assertEquals(0, admission.getWaiting(AdmissionScheduler.Lane.INTERACTIVE));
+    }
+
+    /**
+     * Submit a transfer that completes when its future in transfers is completed.
+     */
+    private CompletableFuture<String> submit(AdmissionScheduler.Lane lane) {
+        return admission.submit(lane, () -> {
+            CompletableFuture<String> transfer = new CompletableFuture<>();
+            transfers.add(transfer);
+            return transfer;
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package mastercardsend.api.p2p.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs batches against a service whose workers can not take the transfers.
+ */
+public class BulkTransferServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test(timeout = 10000)
+    public void testRejectedTransfersFailWithoutBlockingTheBatch() throws Exception {
+        BulkTransferService bulkService = new BulkTransferService(null, null, mapper,
+                new MockEnvironment().withProperty("bulk.concurrency", "1"));
+        bulkService.shutdown();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkService.transfer(new ByteArrayInputStream("{\"amount\":\"100\"}\n{\"amount\":\"200\"}\n".getBytes(StandardCharsets.UTF_8)),
+                out, "ptnr_default");
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode result = mapper.readTree(lines[i]);
+            assertEquals(i, result.get("index").asInt());
+            assertEquals(BulkTransferService.FAILED, result.get("status").asText());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package mastercardsend.api.p2p.service;
+
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives the circuit breaker through its states with calls that succeed or fail on demand.
+ */
+public class CircuitBreakerTest {
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", new MockEnvironment()
+            .withProperty("circuitbreaker.failure-rate-threshold", "50")
+            .withProperty("circuitbreaker.window-size", "10")
+            .withProperty("circuitbreaker.minimum-calls", "4")
+            .withProperty("circuitbreaker.open-millis", "50")
+            .withProperty("circuitbreaker.half-open-probes", "2"));
+
+    @Test
+    public void testOpensOnServerErrorsAndFailsFast() {
+        call(true);
+        call(false);
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertEquals(503, call(true));
+        assertEquals(4, calls.get()); // not made
+        assertEquals(1, breaker.getRejected());
+    }
+
+    @Test
+    public void testClientErrorsDoNotOpen() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(400, callFailing(400));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulProbes() throws InterruptedException {
+        openBreaker();
+        Thread.sleep(60);
+        call(true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        call(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testReopensWhenProbeFails() throws InterruptedException {
+        openBreaker();
+        Thread.sleep(60);
+        call(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(503, call(true));
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * @return 200 if the call succeeded, the error status otherwise
+     */
+    private int call(boolean succeed) {
+        return succeed ? callFailing(0) : callFailing(502);
+    }
+
+    private int callFailing(int status) {
+        try {
+            return breaker.call(() -> {
+                calls.incrementAndGet();
+                if (status != 0) {
+                    throw new SendApiException(status, "Stub", "STUB", "Stub", null);
+                }
+                return 200;
+            });
+        } catch (SendApiException e) {
+            if (e.getHttpStatus() == 503 && !CircuitBreaker.REASON_CODE.equals(e.getReasonCode())) {
+                fail("Unexpected error " + e.getMessage());
+            }
+            return e.getHttpStatus();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package mastercardsend.api.p2p.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads results through a counting loader, with a clock moved by hand: eligible results are kept 60 s,
+ * ineligible ones 10 s.
+ */
+public class EligibilityCacheTest {
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+    private final AtomicInteger calls = new AtomicInteger();
+    private final EligibilityCache cache = new EligibilityCache(2, 60, 10, now::get);
+
+    @Test
+    public void testEligibleKeptForPositiveTtl() {
+        Eligibility eligible = Eligibility.eligible();
+        assertSame(eligible, cache.get("key", () -> load(eligible)));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertSame(eligible, cache.get("key", () -> load(Eligibility.eligible())));
+        assertEquals(1, calls.get());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.get("key", () -> load(Eligibility.eligible()));
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testIneligibleKeptForNegativeTtl() {
+        Eligibility ineligible = Eligibility.ineligible(new TransferError(400, "ineligible", "DECLINE", "test"));
+        assertSame(ineligible, cache.get("key", () -> load(ineligible)));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertSame(ineligible, cache.get("key", () -> load(Eligibility.eligible())));
+        assertEquals(1, calls.get());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(cache.get("key", () -> load(Eligibility.eligible())).isEligible());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testFailedCallsNotCached() {
+        Eligibility failed = Eligibility.failed(new TransferError(503, "unavailable", "SYSTEM_ERROR", "test"));
+        cache.get("key", () -> load(failed));
+        cache.get("key", () -> load(failed));
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        cache.get("key-1", () -> load(Eligibility.eligible()));
+        cache.get("key-2", () -> load(Eligibility.eligible()));
+        cache.get("key-1", () -> load(Eligibility.eligible()));
+        cache.get("key-3", () -> load(Eligibility.eligible())); // key-2 is the least recently used
+        assertEquals(1, cache.getEvictions());
+
+        cache.get("key-1", () -> load(Eligibility.eligible()));
+        assertEquals(3, calls.get());
+        cache.get("key-2", () -> load(Eligibility.eligible()));
+        assertEquals(4, calls.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentLookupsShareOneCall() throws Exception {
+        // A failed result is not cached, so the waiting caller can only get it from the shared call
+        Eligibility failed = Eligibility.failed(new TransferError(503, "unavailable", "SYSTEM_ERROR", "test"));
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Eligibility> first = CompletableFuture.supplyAsync(() -> cache.get("key", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return failed;
+        }));
+        while (calls.get() == 0) {
+            Thread.sleep(1);
+        }
+
+        CompletableFuture<Eligibility> waiting = new CompletableFuture<>();
+        Thread second = new Thread(() -> waiting.complete(cache.get("key", () -> load(Eligibility.eligible()))));
+        second.start();
+        while (second.getState() != Thread.State.WAITING) { // joined the call in flight
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertSame(failed, first.get());
+        assertSame(failed, waiting.get());
+        assertEquals(1, calls.get());
+    }
+
+    private Eligibility load(Eligibility result) {
+        calls.incrementAndGet();
+        return result;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
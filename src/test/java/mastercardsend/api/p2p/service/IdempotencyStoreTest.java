@@ -0,0 +1,83 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.p2p.PaymentTransfer;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Duplicates of transfers sent with a client transfer reference, against calls completing on demand.
+ */
+public class IdempotencyStoreTest {
+    private final AtomicInteger calls = new AtomicInteger();
+    // Failures with the DECLINE reason code are retried, as if configured with their own max-attempts
+    private final IdempotencyStore store = new IdempotencyStore(100,
+            outcome -> "DECLINE".equals(outcome.getError().getReasonCode()));
+
+    @Test
+    public void testDuplicateInFlightSharesTheCall() {
+        CompletableFuture<TransferOutcome> call = new CompletableFuture<>();
+        CompletableFuture<TransferOutcome> first = store.submit("ptnr:ref-1", () -> send(call));
+        CompletableFuture<TransferOutcome> duplicate = store.submit("ptnr:ref-1", () -> send(new CompletableFuture<>()));
+        assertFalse(duplicate.isDone());
+        TransferOutcome outcome = TransferOutcome.success(null, new PaymentTransfer());
+        call.complete(outcome);
+        assertSame(outcome, first.join());
+        assertSame(outcome, duplicate.join());
+        assertEquals(1, calls.get());
+        assertEquals(1, store.getReplays());
+    }
+
+    @Test
+    public void testFinalOutcomesReplayed() {
+        TransferOutcome success = TransferOutcome.success(null, new PaymentTransfer());
+        store.submit("ptnr:ref-1", () -> send(CompletableFuture.completedFuture(success)));
+        assertSame(success, store.submit("ptnr:ref-1", () -> send(failed(503, "SYSTEM_ERROR"))).join());
+
+        TransferOutcome invalid = failed(400, "INVALID_INPUT_VALUE").join();
+        store.submit("ptnr:ref-2", () -> send(CompletableFuture.completedFuture(invalid)));
+        assertSame(invalid, store.submit("ptnr:ref-2", () -> send(failed(503, "SYSTEM_ERROR"))).join());
+        assertEquals(2, calls.get());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testRetryableOutcomesSentAgain() {
+        assertResent(503, "SYSTEM_ERROR");
+        assertResent(0, "TIMEOUT");
+        assertResent(408, "REQUEST_TIMEOUT");
+        assertResent(429, "TOO_MANY_REQUESTS");
+        assertResent(400, "DECLINE");
+    }
+
+    @Test
+    public void testSameReferenceOfTwoPartners() {
+        store.submit("ptnr_a:ref-1", () -> send(CompletableFuture.completedFuture(TransferOutcome.success(null, new PaymentTransfer()))));
+        assertFalse(store.submit("ptnr_b:ref-1", () -> send(failed(400, "INVALID_INPUT_VALUE"))).join().isSuccess());
+        assertEquals(2, calls.get());
+    }
+
+    private void assertResent(int httpStatus, String reasonCode) {
+        calls.set(0);
+        String key = "ptnr:" + reasonCode;
+        store.submit(key, () -> send(failed(httpStatus, reasonCode))).join();
+        TransferOutcome success = TransferOutcome.success(null, new PaymentTransfer());
+        assertSame(success, store.submit(key, () -> send(CompletableFuture.completedFuture(success))).join());
+        assertEquals(2, calls.get());
+    }
+
+    private CompletableFuture<TransferOutcome> send(CompletableFuture<TransferOutcome> outcome) {
+        calls.incrementAndGet();
+        return outcome;
+    }
+
+    private static CompletableFuture<TransferOutcome> failed(int httpStatus, String reasonCode) {
+        return CompletableFuture.completedFuture(
+                TransferOutcome.failure(null, new TransferError(httpStatus, "failed", reasonCode, "test")));
+    }
+}
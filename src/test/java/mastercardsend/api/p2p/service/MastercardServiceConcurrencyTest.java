@@ -0,0 +1,174 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mastercardsend.api.p2p.journal.TransferJournal;
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives MastercardService from worker pools against a stubbed API with fixed latency.
+ */
+public class MastercardServiceConcurrencyTest {
+    private static final int TRANSFERS = 64;
+    private static final long LATENCY_MILLIS = 20;
+
+    private final MastercardService service = new MastercardService(new StubSendApiClient(),
+            new Diagnostics(Diagnostics.Level.OFF), TransferJournal.NONE,
+            new TransferMetrics(new SimpleMeterRegistry()), new MockEnvironment());
+
+    @Test
+    public void testOutcomesDoNotCrossTalk() throws Exception {
+        List<Future<TransferOutcome>> outcomes = submitAll(8);
+        for (int i = 0; i < TRANSFERS; i++) {
+            TransferOutcome outcome = outcomes.get(i).get();
+            if (i % 4 == 0) { // the stub rejects every fourth transfer
+                assertFalse(outcome.isSuccess());
+                assertNull(outcome.getResponse());
+                assertEquals(502, outcome.getError().getHttpStatus());
+                assertEquals("Recipient-" + i, outcome.getError().getMessage());
+            } else {
+                assertTrue(outcome.isSuccess());
+                assertNull(outcome.getError());
+                assertEquals("Recipient-" + i, outcome.getResponse().get("payment_transfer.recipient.first_name"));
+            }
+            assertTrue(outcome.getRequest().contains("\"Recipient-" + i + "\""));
+        }
+    }
+
+    @Test
+    public void testEligibilityDoesNotCrossTalk() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Eligibility>> results = new ArrayList<>();
+            for (int i = 0; i < TRANSFERS; i++) {
+                MastercardSendPaymentTransfer paymentTransfer = transfer(i);
+                results.add(pool.submit(() -> service.checkEligibility(paymentTransfer)));
+            }
+            for (int i = 0; i < TRANSFERS; i++) {
+                Eligibility eligibility = results.get(i).get();
+                if (i % 2 == 0) {
+                    assertTrue(eligibility.isEligible());
+                } else {
+                    assertFalse(eligibility.isEligible());
+                    assertEquals("Recipient-" + i, eligibility.getError().getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testThroughputScalesWithThreads() throws Exception {
+        long start = System.nanoTime();
+        for (Future<TransferOutcome> outcome : submitAll(1)) {
+            outcome.get();
+        }
+        long single = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (Future<TransferOutcome> outcome : submitAll(8)) {
+            outcome.get();
+        }
+        long multi = System.nanoTime() - start;
+
+        // 8 threads would ideally be 8 times faster, leave room for scheduling noise
+        assertTrue("1 thread: " + single + "ns, 8 threads: " + multi + "ns", multi * 4 < single);
+    }
+
+    private List<Future<TransferOutcome>> submitAll(int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<TransferOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            MastercardSendPaymentTransfer paymentTransfer = transfer(i);
+            Callable<TransferOutcome> call = () -> service.create(paymentTransfer);
+            outcomes.add(pool.submit(call));
+        }
+        pool.shutdown();
+        return outcomes;
+    }
+
+    private static MastercardSendPaymentTransfer transfer(int i) {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+        paymentTransfer.setPartnerId("ptnr_test");
+        paymentTransfer.setAmount(Amount.valueOf("44"));
+        paymentTransfer.setCurrency("USD");
+        paymentTransfer.setRecipientFirstName("Recipient-" + i);
+        paymentTransfer.setRecipientAccountUri("pan:" + pan(i) + ";exp=2099-08");
+        return paymentTransfer;
+    }
+
+    /**
+     * @return A card number valid for the Luhn check, the transfer index in the 5 digits before the check digit
+     */
+    private static String pan(int i) {
+        String digits = "5509670000" + (10000 + i);
+        int sum = 0;
+        for (int d = digits.length() - 1, position = 0; d >= 0; d--, position++) {
+            int digit = digits.charAt(d) - '0';
+            sum += position % 2 == 0 ? (digit * 2 > 9 ? digit * 2 - 9 : digit * 2) : digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Echoes the recipient name after a fixed delay.
+     */
+    private static class StubSendApiClient implements SendApiClient {
+
+        @Override
+        public AccountInfo readAccountInfo(RequestMap map) {
+            pause();
+            String uri = (String) map.get("account_info.account_uri");
+            int end = uri.indexOf(';');
+            int i = Integer.parseInt(uri.substring(end - 6, end - 1)) - 10000;
+            RequestMap response = new RequestMap();
+            response.set("account_info.receiving_eligibility.eligible", i % 2 == 0);
+            response.set("account_info.receiving_eligibility.reason_description", "Recipient-" + i);
+            return new AccountInfo(response);
+        }
+
+        @Override
+        public PaymentTransfer createPaymentTransfer(RequestMap map) throws SendApiException {
+            pause();
+            String name = (String) map.get("payment_transfer.recipient.first_name");
+            if (Integer.parseInt(name.substring("Recipient-".length())) % 4 == 0) {
+                throw new SendApiException(502, name, "SYSTEM_ERROR", "Stub", null);
+            }
+            RequestMap response = new RequestMap();
+            response.set("payment_transfer.transfer_reference", map.get("payment_transfer.transfer_reference"));
+            response.set("payment_transfer.recipient.first_name", name);
+            return new PaymentTransfer(response);
+        }
+
+        @Override
+        public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException {
+            throw new SendApiException(404, transferId, "RESOURCE_NOT_FOUND", "Stub", null);
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
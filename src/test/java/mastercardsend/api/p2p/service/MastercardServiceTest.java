@@ -0,0 +1,117 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2p.AccountInfo;
+import com.mastercard.api.p2p.PaymentTransfer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mastercardsend.api.p2p.journal.TransferJournal;
+import mastercardsend.api.p2p.model.Amount;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Calls ending with an exception rather than an API response are still timed and journaled.
+ */
+public class MastercardServiceTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<TransferOutcome> completed = new ArrayList<>();
+    private final MastercardService service = new MastercardService(new FailingSendApiClient(),
+            new Diagnostics(Diagnostics.Level.OFF), new RecordingJournal(), new TransferMetrics(registry),
+            new MockEnvironment()
+                    .withProperty("ratelimit.eligibility.rate-per-second", "1")
+                    .withProperty("ratelimit.max-wait-millis", "0")
+                    .withProperty("eligibility.cache.maximum-size", "0"));
+
+    @Test
+    public void testRateLimitedEligibilityStopsTheTimer() {
+        service.checkEligibility(transfer());
+        try {
+            service.checkEligibility(transfer());
+            fail("the second call is over the budget");
+        } catch (RateLimitExceededException e) {
+            // expected
+        }
+        assertEquals(0, inFlight("eligibility"), 0);
+        assertEquals(1, registry.get(TransferMetrics.ELIGIBILITY).tag("reason_code", MastercardService.RATE_LIMITED).timer().count());
+    }
+
+    @Test
+    public void testUnexpectedExceptionJournaledAsFailed() {
+        try {
+            service.create(transfer());
+            fail("the client exception is rethrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, inFlight("create"), 0);
+        assertEquals(1, completed.size());
+        assertFalse(completed.get(0).isSuccess());
+        assertEquals(MastercardService.INTERNAL_ERROR, completed.get(0).getError().getReasonCode());
+        assertEquals(1, registry.get(TransferMetrics.CREATE).tag("reason_code", MastercardService.INTERNAL_ERROR).timer().count());
+    }
+
+    private double inFlight(String call) {
+        return registry.get(TransferMetrics.IN_FLIGHT).tag("call", call).gauge().value();
+    }
+
+    private static MastercardSendPaymentTransfer transfer() {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+        paymentTransfer.setPartnerId("ptnr_test");
+        paymentTransfer.setAmount(Amount.valueOf("44"));
+        paymentTransfer.setCurrency("USD");
+        paymentTransfer.setSenderAccountUri("pan:5299920000000149;exp=2099-08");
+        paymentTransfer.setRecipientAccountUri("pan:5509670000000187;exp=2099-08");
+        return paymentTransfer;
+    }
+
+    /**
+     * Records the completed transfers.
+     */
+    private class RecordingJournal implements TransferJournal {
+
+        @Override
+        public void started(String transferReference, MastercardSendPaymentTransfer paymentTransfer) {
+        }
+
+        @Override
+        public void completed(String partnerId, String transferReference, TransferOutcome outcome) {
+            completed.add(outcome);
+        }
+
+        @Override
+        public String findTransferId(String partnerId, String transferReference) {
+            return null;
+        }
+    }
+
+    /**
+     * Answers the eligibility checks, and fails every payment transfer with an unexpected exception.
+     */
+    private static class FailingSendApiClient implements SendApiClient {
+
+        @Override
+        public AccountInfo readAccountInfo(RequestMap map) {
+            RequestMap response = new RequestMap();
+            response.set("account_info.receiving_eligibility.eligible", true);
+            return new AccountInfo(response);
+        }
+
+        @Override
+        public PaymentTransfer createPaymentTransfer(RequestMap map) {
+            throw new IllegalStateException("Unexpected response");
+        }
+
+        @Override
+        public PaymentTransfer readPaymentTransfer(String partnerId, String transferId) throws SendApiException {
+            throw new SendApiException(404, transferId, "RESOURCE_NOT_FOUND", "Stub", null);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package mastercardsend.api.p2p.service;
+
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Partner profiles of the default and further tenants.
+ */
+public class PartnerRegistryTest {
+    private final MockEnvironment env = new MockEnvironment()
+            .withProperty("partnerId", "ptnr_default")
+            .withProperty("consumerKey", "default-key")
+            .withProperty("p12PrivateKey", "default.p12")
+            .withProperty("keyAlias", "keyalias")
+            .withProperty("keyPassword", "keystorepassword")
+            .withProperty("partners.tenants", "acme, globex")
+            .withProperty("partners.acme.partner-id", "ptnr_acme")
+            .withProperty("partners.acme.consumer-key", "acme-key")
+            .withProperty("partners.acme.p12-private-key", "acme.p12")
+            .withProperty("partners.acme.key-alias", "acme")
+            .withProperty("partners.globex.partner-id", "ptnr_globex")
+            .withProperty("partners.globex.consumer-key", "globex-key")
+            .withProperty("partners.globex.p12-private-key", "globex.p12")
+            .withProperty("partners.globex.key-alias", "globex");
+
+    @Test
+    public void testTenants() {
+        PartnerRegistry partners = new PartnerRegistry(env);
+        assertEquals(3, partners.getPartners().size());
+        assertSame(partners.getDefault(), partners.get(null));
+        assertEquals("default-key", partners.get("").getConsumerKey());
+        assertEquals("ptnr_acme", partners.get("acme").getPartnerId());
+        assertEquals("globex.p12", partners.get("globex").getP12PrivateKey());
+    }
+
+    @Test
+    public void testCredentialsByPartnerId() {
+        PartnerRegistry partners = new PartnerRegistry(env);
+        assertEquals("acme", partners.forPartnerId("ptnr_acme").getTenant());
+        assertSame(partners.getDefault(), partners.forPartnerId("ptnr_default"));
+    }
+
+    @Test(expected = UnknownTenantException.class)
+    public void testUnknownPartnerIdNotSigned() {
+        new PartnerRegistry(env).forPartnerId("ptnr_unknown");
+    }
+
+    @Test(expected = UnknownTenantException.class)
+    public void testUnknownTenant() {
+        new PartnerRegistry(env).get("initech");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSharedPartnerId() {
+        new PartnerRegistry(env.withProperty("partners.globex.partner-id", "ptnr_acme"));
+    }
+}
@@ -0,0 +1,84 @@
+package mastercardsend.api.p2p.service;
+
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives the per-partner buckets with a clock moved by hand: 10 calls per second, bursts of 3,
+ * and calls waiting at most 250 ms.
+ */
+public class RateLimiterTest {
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+    private final RateLimiter limiter = new RateLimiter("create", new MockEnvironment()
+            .withProperty("ratelimit.create.rate-per-second", "10")
+            .withProperty("ratelimit.create.burst", "3")
+            .withProperty("ratelimit.max-wait-millis", "250")
+            .withProperty("ratelimit.create.partners.ptnr_big.rate-per-second", "100")
+            .withProperty("ratelimit.create.partners.ptnr_big.burst", "1")
+            .withProperty("ratelimit.create.partners.ptnr_free.rate-per-second", "0"), now::get);
+
+    @Test
+    public void testBurstThenSteadySpacing() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.reserve("ptnr_a")); // the burst goes through at once
+        }
+        assertEquals(INTERVAL, limiter.reserve("ptnr_a"));
+        assertEquals(2 * INTERVAL, limiter.reserve("ptnr_a"));
+
+        now.addAndGet(2 * INTERVAL); // the two reserved slots are reached
+        assertEquals(INTERVAL, limiter.reserve("ptnr_a"));
+    }
+
+    @Test
+    public void testBurstRefillsAtTheRate() {
+        for (int i = 0; i < 3; i++) {
+            limiter.reserve("ptnr_a");
+        }
+        now.addAndGet(3 * INTERVAL);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.reserve("ptnr_a"));
+        }
+    }
+
+    @Test
+    public void testWaitLongerThanMaximumRejected() {
+        for (int i = 0; i < 5; i++) {
+            limiter.reserve("ptnr_a");
+        }
+        assertEquals(-3 * INTERVAL, limiter.reserve("ptnr_a")); // 300 ms away, nothing reserved
+        assertEquals(-3 * INTERVAL, limiter.reserve("ptnr_a"));
+    }
+
+    @Test
+    public void testRetryAfter() {
+        for (int i = 0; i < 5; i++) {
+            limiter.reserve("ptnr_a");
+        }
+        try {
+            limiter.acquire("ptnr_a");
+            fail("the next token is further away than the maximum wait");
+        } catch (RateLimitExceededException e) {
+            assertEquals(300, e.getRetryAfterMillis());
+            assertEquals(1, e.getRetryAfterSeconds());
+        }
+    }
+
+    @Test
+    public void testBudgetsByPartner() {
+        limiter.reserve("ptnr_big");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), limiter.reserve("ptnr_big"));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.reserve("ptnr_free")); // rate 0, not limited
+        }
+        assertEquals(0, limiter.reserve("ptnr_a")); // untouched by the other partners
+    }
+}
@@ -0,0 +1,43 @@
+package mastercardsend.api.p2p.service;
+
+import io.micrometer.core.instrument.Tags;
+import mastercardsend.api.p2p.model.MastercardSendPaymentTransfer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the timer tags keep to their known values, whatever the request and the API send.
+ */
+public class TransferMetricsTest {
+
+    @Test
+    public void testKnownValuesKept() {
+        MastercardSendPaymentTransfer paymentTransfer = paymentTransfer("USD", "pan:5509670000000187");
+        Tags tags = TransferMetrics.tags(paymentTransfer, "failed", new TransferError(0, "Read timed out", "TIMEOUT", "local"));
+        assertEquals(Tags.of("payment_type", "P2P", "currency", "USD", "uri_scheme", "pan",
+                "outcome", "failed", "reason_code", "TIMEOUT"), tags);
+    }
+
+    @Test
+    public void testUnknownValuesCollapsed() {
+        MastercardSendPaymentTransfer paymentTransfer = paymentTransfer("ZZZ", "scheme-5678:5509670000000187");
+        Tags tags = TransferMetrics.tags(paymentTransfer, "failed", new TransferError(400, "Rejected", "ERROR_1234", "Send"));
+        assertEquals(Tags.of("payment_type", "P2P", "currency", "other", "uri_scheme", "other",
+                "outcome", "failed", "reason_code", "other"), tags);
+    }
+
+    @Test
+    public void testMissingValues() {
+        Tags tags = TransferMetrics.tags(new MastercardSendPaymentTransfer(), "success", null);
+        assertEquals(Tags.of("payment_type", "P2P", "currency", "none", "uri_scheme", "unknown",
+                "outcome", "success", "reason_code", "none"), tags);
+    }
+
+    private static MastercardSendPaymentTransfer paymentTransfer(String currency, String recipientAccountUri) {
+        MastercardSendPaymentTransfer paymentTransfer = new MastercardSendPaymentTransfer();
+        paymentTransfer.setCurrency(currency);
+        paymentTransfer.setRecipientAccountUri(recipientAccountUri);
+        return paymentTransfer;
+    }
+}
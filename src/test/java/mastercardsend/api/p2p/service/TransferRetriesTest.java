@@ -0,0 +1,115 @@
+package mastercardsend.api.p2p.service;
+
+import com.mastercard.api.p2p.PaymentTransfer;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retries of transfers failing on demand, with short backoffs.
+ */
+public class TransferRetriesTest {
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final TransferRetries retries = new TransferRetries(new MockEnvironment()
+            .withProperty("retry.create.max-attempts", "3")
+            .withProperty("retry.create.initial-backoff-millis", "10")
+            .withProperty("retry.create.reason-codes.DECLINE.max-attempts", "2")
+            .withProperty("retry.create.reason-codes.SIGNING_ERROR.max-attempts", "3"));
+
+    @Test
+    public void testTransientFailuresRetriedUntilSuccess() {
+        CompletableFuture<TransferOutcome> outcome = retries.call(() -> attempts.incrementAndGet() < 3
+                ? failure(503, "SYSTEM_ERROR")
+                : TransferOutcome.success(null, new PaymentTransfer()));
+        assertFalse(outcome.isDone()); // the caller is not held during the backoff
+        assertTrue(outcome.join().isSuccess());
+        assertEquals(3, attempts.get());
+        assertEquals(2, retries.getRetries());
+    }
+
+    @Test
+    public void testAttemptsUsedUp() {
+        TransferOutcome outcome = retries.call(() -> {
+            attempts.incrementAndGet();
+            return failure(0, "TIMEOUT");
+        }).join();
+        assertEquals("TIMEOUT", outcome.getError().getReasonCode());
+        assertEquals(3, attempts.get());
+        assertEquals(1, retries.getExhausted());
+    }
+
+    @Test
+    public void testPoliciesByReasonCode() {
+        CompletableFuture<TransferOutcome> outcome = retries.call(() -> {
+            attempts.incrementAndGet();
+            return failure(400, "INVALID_AMOUNT");
+        });
+        assertTrue(outcome.isDone());
+        assertEquals(1, attempts.get());
+
+        attempts.set(0);
+        retries.call(() -> {
+            attempts.incrementAndGet();
+            return failure(400, "DECLINE");
+        }).join();
+        assertEquals(2, attempts.get());
+
+        attempts.set(0);
+        assertTrue(retries.call(() -> {
+            attempts.incrementAndGet();
+            return failure(503, CircuitBreaker.REASON_CODE);
+        }).isDone());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testPermanentFailuresNeverRetried() {
+        CompletableFuture<TransferOutcome> outcome = retries.call(() -> {
+            attempts.incrementAndGet();
+            return failure(0, "SIGNING_ERROR");
+        });
+        assertTrue(outcome.isDone()); // despite its configured max-attempts
+        assertEquals(1, attempts.get());
+
+        attempts.set(0);
+        assertTrue(retries.call(() -> {
+            attempts.incrementAndGet();
+            return failure(0, "INVALID_INPUT_FORMAT");
+        }).isDone());
+        assertEquals(1, attempts.get());
+        assertEquals(0, retries.getRetries());
+    }
+
+    @Test
+    public void testShutdownCompletesWaitingRetries() {
+        TransferRetries slow = new TransferRetries(new MockEnvironment()
+                .withProperty("retry.create.max-attempts", "3")
+                .withProperty("retry.create.initial-backoff-millis", "60000")
+                .withProperty("retry.create.max-backoff-millis", "60000"));
+        CompletableFuture<TransferOutcome> outcome = slow.call(() -> {
+            attempts.incrementAndGet();
+            return failure(503, "SYSTEM_ERROR");
+        });
+        assertFalse(outcome.isDone());
+        slow.shutdown();
+        assertEquals("SYSTEM_ERROR", outcome.join().getError().getReasonCode());
+        assertEquals(1, attempts.get()); // the waiting retry is not sent
+        assertEquals(0, slow.getPending());
+    }
+
+    @After
+    public void tearDown() {
+        retries.shutdown();
+    }
+
+    private static TransferOutcome failure(int httpStatus, String reasonCode) {
+        return TransferOutcome.failure(null, new TransferError(httpStatus, "failed", reasonCode, "test"));
+    }
+}
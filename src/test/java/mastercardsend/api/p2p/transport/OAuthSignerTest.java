@@ -0,0 +1,59 @@
+package mastercardsend.api.p2p.transport;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the OAuth 1.0a signature base string and that the signature verifies with the public key.
+ */
+public class OAuthSignerTest {
+    private static final Pattern PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    @Test
+    public void testBaseStringSortsAndEncodesParameters() {
+        Map<String, String> oauth = new LinkedHashMap<>();
+        oauth.put("oauth_consumer_key", "key!");
+        oauth.put("oauth_nonce", "n");
+        String baseString = OAuthSigner.baseString("post", URI.create("HTTPS://Sandbox.api.mastercard.com:443/send/v1?b=2&a=x%20y"), oauth);
+        assertEquals("POST&https%3A%2F%2Fsandbox.api.mastercard.com%2Fsend%2Fv1&"
+                + "a%3Dx%2520y%26b%3D2%26oauth_consumer_key%3Dkey%2521%26oauth_nonce%3Dn", baseString);
+    }
+
+    @Test
+    public void testSignatureVerifies() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        URI uri = URI.create("https://sandbox.api.mastercard.com/send/v1/partners/ptnr_1/transfers/payment");
+        byte[] body = "{\"payment_transfer\":{}}".getBytes(StandardCharsets.UTF_8);
+
+        String header = new OAuthSigner("consumer", SigningKey.of(keyPair.getPrivate())).authorizationHeader("POST", uri, body);
+        assertTrue(header.startsWith("OAuth "));
+        Map<String, String> parameters = new LinkedHashMap<>();
+        Matcher matcher = PARAMETER.matcher(header);
+        while (matcher.find()) {
+            parameters.put(matcher.group(1), URLDecoder.decode(matcher.group(2), "UTF-8"));
+        }
+        String signature = parameters.remove("oauth_signature");
+        assertEquals("RSA-SHA256", parameters.get("oauth_signature_method"));
+
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(OAuthSigner.baseString("POST", uri, parameters).getBytes(StandardCharsets.UTF_8));
+        assertTrue(verifier.verify(Base64.getDecoder().decode(signature)));
+    }
+}